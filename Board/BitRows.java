@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+/**
+ * Word-parallel generation step over rows of packed cells. Each long holds 64
+ * cells, bit k of a word being the cell one column to the right of bit k - 1.
+ * Every row is laid out as a ghost word, the row's words, and another ghost
+ * word, so neighbouring columns across word boundaries can be read without
+ * bounds checks.
+ *
+ * @author Dennis Windsor
+ */
+final class BitRows {
+
+    private BitRows(){
+    }
+
+    /**
+     * Computes the next generation of one row. The eight neighbours of every
+     * cell are summed with bitwise half and full adders, 64 cells at a time.
+     *
+     * @param src       packed source cells
+     * @param above     offset of the ghost word starting the row above
+     * @param row       offset of the ghost word starting the row
+     * @param below     offset of the ghost word starting the row below
+     * @param dst       packed destination cells
+     * @param out       offset of the ghost word starting the destination row
+     * @param words     number of non-ghost words in a row
+     * @param lastMask  mask of the columns in use in the last word of a row
+     * @param rule      rule giving the next state of each cell
+     */
+    static void step(long[] src, int above, int row, int below, long[] dst,
+            int out, int words, long lastMask, Rule rule){
+        boolean life = rule.isLife();
+        int births = rule.births();
+        int survivals = rule.survivals();
+        int w;
+        for (w = 1; w <= words; w++){
+            long a = src[above + w];
+            long b = src[row + w];
+            long c = src[below + w];
+            long aw = a << 1 | src[above + w - 1] >>> 63;
+            long ae = a >>> 1 | src[above + w + 1] << 63;
+            long bw = b << 1 | src[row + w - 1] >>> 63;
+            long be = b >>> 1 | src[row + w + 1] << 63;
+            long cw = c << 1 | src[below + w - 1] >>> 63;
+            long ce = c >>> 1 | src[below + w + 1] << 63;
+            dst[out + w] = life ? life(aw, a, ae, bw, b, be, cw, c, ce)
+                    : next(births, survivals, aw, a, ae, bw, b, be, cw, c, ce);
+        }
+        if (words > 0)
+            dst[out + words] &= lastMask;
+    }
+
+    /**
+     * Computes the next generation of one row, skipping the words of inactive
+     * tiles and recording which bits of each computed word changed.
+     *
+     * @param src       packed source cells
+     * @param above     offset of the ghost word starting the row above
+     * @param row       offset of the ghost word starting the row
+     * @param below     offset of the ghost word starting the row below
+     * @param dst       packed destination cells
+     * @param out       offset of the ghost word starting the destination row
+     * @param words     number of non-ghost words in a row
+     * @param lastMask  mask of the columns in use in the last word of a row
+     * @param rule      rule giving the next state of each cell
+     * @param active    whether each tile needs computing
+     * @param diff      changed bits of each tile, to be added to
+     * @param tile      index of the row's first tile in active and diff
+     */
+    static void step(long[] src, int above, int row, int below, long[] dst,
+            int out, int words, long lastMask, Rule rule, boolean[] active,
+            long[] diff, int tile){
+        boolean life = rule.isLife();
+        int births = rule.births();
+        int survivals = rule.survivals();
+        int w;
+        for (w = 1; w <= words; w++){
+            if (!active[tile + w - 1])
+                continue;
+            long a = src[above + w];
+            long b = src[row + w];
+            long c = src[below + w];
+            long aw = a << 1 | src[above + w - 1] >>> 63;
+            long ae = a >>> 1 | src[above + w + 1] << 63;
+            long bw = b << 1 | src[row + w - 1] >>> 63;
+            long be = b >>> 1 | src[row + w + 1] << 63;
+            long cw = c << 1 | src[below + w - 1] >>> 63;
+            long ce = c >>> 1 | src[below + w + 1] << 63;
+            // The last word's unused columns may hold a ghost cell
+            long mask = w == words ? lastMask : -1L;
+            long cells = (life ? life(aw, a, ae, bw, b, be, cw, c, ce)
+                    : next(births, survivals, aw, a, ae, bw, b, be, cw, c, ce))
+                    & mask;
+            diff[tile + w - 1] |= cells ^ (b & mask);
+            dst[out + w] = cells;
+        }
+    }
+
+    /**
+     * Applies B3/S23 to 64 cells at once given each cell's 3x3 neighbourhood
+     * as nine aligned words.
+     */
+    static long life(long aw, long a, long ae, long bw, long b, long be,
+            long cw, long c, long ce){
+        // Row above and row below each sum to 0..3 (ones and twos bits),
+        // the middle row's two side cells to 0..2.
+        long s1 = aw ^ a ^ ae;
+        long t1 = aw & a | ae & (aw ^ a);
+        long s3 = cw ^ c ^ ce;
+        long t3 = cw & c | ce & (cw ^ c);
+        long s2 = bw ^ be;
+        long t2 = bw & be;
+        // Add the ones bits, carrying into the twos.
+        long ones = s1 ^ s2 ^ s3;
+        long t4 = s1 & s2 | s3 & (s1 ^ s2);
+        // A count of two or three needs exactly one of the four twos bits.
+        long x = t1 ^ t2;
+        long y = t3 ^ t4;
+        long twos = (x ^ y) & ~(t1 & t2 | t3 & t4);
+        return twos & (ones | b);
+    }
+
+    /**
+     * Applies any B/S rule to 64 cells at once given each cell's 3x3
+     * neighbourhood as nine aligned words. The neighbour count is summed into
+     * four bit planes, and each count the rule names is matched against them.
+     *
+     * @param births    bit n set if a dead cell with n neighbours is born
+     * @param survivals bit n set if a live cell with n neighbours survives
+     */
+    static long next(int births, int survivals, long aw, long a, long ae,
+            long bw, long b, long be, long cw, long c, long ce){
+        long s1 = aw ^ a ^ ae;
+        long t1 = aw & a | ae & (aw ^ a);
+        long s3 = cw ^ c ^ ce;
+        long t3 = cw & c | ce & (cw ^ c);
+        long s2 = bw ^ be;
+        long t2 = bw & be;
+        long ones = s1 ^ s2 ^ s3;
+        long t4 = s1 & s2 | s3 & (s1 ^ s2);
+        // Sum the four twos bits into twos, fours and eights planes.
+        long x = t1 ^ t2;
+        long xc = t1 & t2;
+        long y = t3 ^ t4;
+        long yc = t3 & t4;
+        long twos = x ^ y;
+        long xy = x & y;
+        long fours = xc ^ yc ^ xy;
+        long eights = xc & yc | xy & (xc ^ yc);
+        long born = 0;
+        long kept = 0;
+        int n;
+        for (n = 0; n <= 8; n++){
+            int bit = 1 << n;
+            if (((births | survivals) & bit) == 0)
+                continue;
+            long count = ((n & 1) != 0 ? ones : ~ones)
+                    & ((n & 2) != 0 ? twos : ~twos)
+                    & ((n & 4) != 0 ? fours : ~fours)
+                    & ((n & 8) != 0 ? eights : ~eights);
+            if ((births & bit) != 0)
+                born |= count;
+            if ((survivals & bit) != 0)
+                kept |= count;
+        }
+        return born & ~b | kept & b;
+    }
+
+    /**
+     * Calls the visitor with the row and column of every live cell of a
+     * packed board, in row order.
+     *
+     * @param cells     packed cells, including ghost rows and words
+     * @param size      length of one row of the board
+     * @param words     number of non-ghost words in a row
+     * @param stride    number of words per row, including ghost words
+     * @param visitor   visitor to be called for each live cell
+     */
+    static void forEachLive(long[] cells, int size, int words, int stride,
+            CellVisitor visitor){
+        int i, w;
+        for (i = 0; i < size; i++){
+            int row = (i + 1) * stride;
+            for (w = 1; w <= words; w++){
+                long bits = cells[row + w];
+                while (bits != 0){
+                    int bit = Long.numberOfTrailingZeros(bits);
+                    visitor.visit(i, ((w - 1) << 6) + bit);
+                    bits &= bits - 1;
+                }
+            }
+        }
+    }
+}
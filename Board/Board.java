@@ -16,20 +16,87 @@
  */
 package Board;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * This class consists of the representation of the board in Conway's Game of 
  * Life along with methods necessary to manipulate the board.
  * 
+ * A board given more than one thread with setThreads() owns a thread pool,
+ * which close() shuts down.
+ * 
  * @author Dennis Windsor
  */
-public class Board {
-    // Basic board state
+public class Board implements AutoCloseable {
+    // Basic board state. Cells are packed 64 to a long: row x is stored at
+    // offset (x + 1) * stride, with column y in word (y >>> 6) + 1 at bit
+    // (y & 63). The first and last row and the first and last word of each
+    // row are always-empty ghost cells so the generation step never needs to
+    // check bounds.
     private final int size;
-    private boolean[][] board;
-    // Collection of shapes that can be added to board
-    private final HashMap<String, int[]> shapes;
+    private final int words;
+    private final int stride;
+    private final long lastMask;
+    private long[] board;
+    // Buffer the next generation is written into before being swapped with
+    // board. Its ghost cells are never written so stay empty.
+    private long[] next;
+    private long generation;
+    // Hash of the live cells: the XOR of wordHash() over every word of the
+    // board. Once first asked for it is kept up to date as words change.
+    private long hash;
+    private boolean hashing;
+    // Where each generation's statistics are recorded, or null if nowhere
+    private SimulationMetrics metrics;
+    private Rule rule = Rule.LIFE;
+    private Boundary boundary = Boundary.DEAD;
+    // Parallel update state. A null executor means generations are computed
+    // serially on the calling thread.
+    private ExecutorService executor;
+    private boolean ownsExecutor;
+    private int bands = 1;
+    private List<Callable<Void>> bandTasks;
+    // Longest run of generations computed in one temporal block, limited by
+    // the one-word halo either side of a block, and the number of longs a
+    // block's two buffers should take, sized for a core's L2 cache.
+    private static final int MAX_BLOCK_GENERATIONS = 64;
+    private static final int BLOCK_LONGS = 1 << 17;
+    // Whether the JVM was started with the Vector API, without which
+    // VectorRows cannot be loaded
+    private static final boolean VECTOR_AVAILABLE = ModuleLayer.boot()
+            .findModule("jdk.incubator.vector").isPresent();
+    // Active-region tracking. The board is split into tiles one word wide and
+    // TILE_ROWS rows high. diff holds, for each tile, the bits that changed
+    // in the last generation or were set by hand since. A tile is only
+    // recomputed when it or a neighbouring tile has changed; otherwise both
+    // buffers already hold its next state.
+    static final int TILE_SHIFT = 6;
+    private static final int TILE_ROWS = 1 << TILE_SHIFT;
+    private final int tileRows;
+    private final long[] diff;
+    private final boolean[] active;
+    private final boolean[] activeRows;
+    // Compute rows with VectorRows rather than BitRows
+    private boolean vectorised;
+    // Population index: the live cells in each tile and on the whole board,
+    // and a summed-area table of the tile counts with a row and column of
+    // zeros before the first tile. Like the hash, the counts are only kept
+    // once first asked for. The table is rebuilt when a region is counted
+    // after any tile count has changed.
+    private final int[] tileCounts;
+    private long population;
+    private boolean indexing;
+    private long[] tileSums;
+    private boolean sumsStale;
     
     /**
      * Create a new board which is size by size large. All cells are initially
@@ -42,84 +109,555 @@ public class Board {
         if (size < 0)
             throw new IllegalArgumentException("Size must be positive.");
         this.size = size;
-        int i, j;
-        board = new boolean[size][size];
-        for (i = 0; i < size; i++)
-            for (j = 0; j < size; j ++)
-                board[i][j] = false;
-        shapes = new HashMap<>();
-        addShapes();
+        words = (size + 63) >>> 6;
+        stride = words + 2;
+        lastMask = (size & 63) == 0 ? -1L : (1L << (size & 63)) - 1;
+        board = new long[(size + 2) * stride];
+        next = new long[board.length];
+        tileRows = (size + TILE_ROWS - 1) >>> TILE_SHIFT;
+        diff = new long[tileRows * words];
+        active = new boolean[diff.length];
+        activeRows = new boolean[tileRows];
+        tileCounts = new int[diff.length];
     }
 
-    // Populate shapes hashtable.
-    private void addShapes() {
-        // Still lifes
-        shapes.put("block", new int[] {0,0,0,1,1,0,1,1});
-        shapes.put("beehive", new int[] {0,1,0,2,1,0,1,3,2,1,2,2});
-        shapes.put("loaf", new int[] {0,1,0,2,1,0,1,3,2,1,2,3,3,2});
-        shapes.put("boat", new int[] {0,0,0,1,1,0,1,2,2,1});
-        shapes.put("tub", new int[] {0,1,1,0,1,2,2,1});
-        
-        // Oscillators
-        shapes.put("blinker", new int[] {0,1,1,1,2,1});
-        shapes.put("toad", new int[] {1,1,1,2,1,3,2,0,2,1,2,2});
-        shapes.put("beacon", new int[] {0,0,0,1,1,0,2,3,3,2,3,3});
-        
-        // Spaceships
-        shapes.put("glider", new int[] {0,1,1,2,2,0,2,1,2,2});
-        shapes.put("LWS", new int[] {0,0,0,3,1,4,2,0,2,4,3,1,3,2,3,3,3,4});
-
-        // Methusalahs
-        shapes.put("r-pentomino", new int[] {0,1,0,2,1,0,1,1,2,1});
-        shapes.put("diehard", new int[] {0,6,1,0,1,1,2,1,2,5,2,6,2,7});
-        shapes.put("acorn", new int[] {0,1,1,3,2,0,2,1,2,4,2,5,2,6});
-    }
-    
     /**
      * Updates the game board by advancing it one generation according to the 
-     * following rules:
+     * board's rule, by default Conway's rules:
      * - A live cell with fewer than two live neighbours dies.
      * - A live cell with two or three live neighbours lives on.
      * - A live cell with more than three live neighbours dies.
      * - A dead cell with exactly three live neighbours becomes a live cell.
+     * Cells beyond the edge of the board are given by its boundary mode, by
+     * default always dead.
      */
     public void update(){
-        boolean[][] new_board = new boolean[size][size];
-        int i, j;
-        for (i = 0; i < size; i++){
-            for (j = 0; j < size; j++){
-                int neighbours = getNeighbours(i, j);
-                if (this.board[i][j]){
-                  if (neighbours < 2)
-                      new_board[i][j] = false;
-                  else if (neighbours < 4)
-                      new_board[i][j] = true;
-                  else
-                      new_board[i][j] = false;
-                }
-                else
-                    if (neighbours == 3)
-                        new_board[i][j] = true;
+        SimulationMetrics metrics = this.metrics;
+        long start = 0;
+        long allocated = 0;
+        if (metrics != null){
+            // Only the calling thread's allocation can be measured, which
+            // misses the bands run on an executor's threads
+            allocated = executor == null ? SimulationMetrics.allocatedBytes()
+                    : -1;
+            start = System.nanoTime();
+        }
+        markActiveTiles();
+        Edges.fill(board, size, words, stride, lastMask, boundary);
+        if (executor == null)
+            stepRows(board, next, 1, size + 1);
+        else
+            stepBands();
+        if (boundary != Boundary.DEAD)
+            Edges.clear(board, size, words, stride, lastMask);
+        long[] old = board;
+        board = next;
+        next = old;
+        generation++;
+        if (hashing)
+            hashChanges();
+        if (indexing)
+            countChangedTiles();
+        if (metrics != null){
+            long nanos = System.nanoTime() - start;
+            long bytes = allocated < 0 ? -1
+                    : SimulationMetrics.allocatedBytes() - allocated;
+            metrics.recordGeneration(generation, nanos, getPopulation(),
+                    getBirthCount(), getDeathCount(), bytes);
+        }
+    }
+    
+    /**
+     * Advances the board by the given number of generations, with the same
+     * result as calling update() that many times. With a dead boundary and no
+     * metrics set, all but the last generation are computed with temporal
+     * blocking: the board is split into blocks small enough to stay in
+     * cache, and each block is read once with a halo of neighbouring cells
+     * wide enough to advance it many generations before its centre is
+     * written back. Large boards then read and write memory a couple of
+     * times per call instead of once per generation. Statistics such as the
+     * birth count afterwards cover only the last generation, as they would
+     * after the last update().
+     * 
+     * @param generations   number of generations to advance
+     * @exception IllegalArgumentException if generations is negative
+     */
+    public void update(int generations) throws IllegalArgumentException{
+        if (generations < 0)
+            throw new IllegalArgumentException(
+                    "Generations must not be negative.");
+        if (boundary != Boundary.DEAD || metrics != null || size == 0){
+            int i;
+            for (i = 0; i < generations; i++)
+                update();
+            return;
+        }
+        while (generations > 1){
+            int block = Math.min(generations - 1, MAX_BLOCK_GENERATIONS);
+            stepBlocks(block);
+            generations -= block;
+        }
+        // A last ordinary generation leaves the change tracking and the
+        // previous generation's buffer as update() would
+        if (generations > 0)
+            update();
+    }
+    
+    // Advance the whole board the given number of generations block by
+    // block, reading the current generation and writing the result to the
+    // other buffer, then swap them. Every tile is then marked changed since
+    // the older buffer no longer holds the previous generation.
+    private void stepBlocks(int generations){
+        int blockWords = Math.min(words, 32);
+        int blockRows = Math.max(16, BLOCK_LONGS / 2 / (blockWords + 4)
+                - 2 * generations);
+        List<int[]> blocks = new ArrayList<>();
+        int x, w;
+        for (x = 0; x < size; x += blockRows)
+            for (w = 0; w < words; w += blockWords)
+                blocks.add(new int[]{x, Math.min(size, x + blockRows), w,
+                        Math.min(words, w + blockWords)});
+        if (executor == null){
+            long[][] scratch = new long[2][];
+            for (int[] block : blocks)
+                scratch = stepBlock(block, generations, scratch);
+        }
+        else {
+            List<Callable<Void>> tasks = new ArrayList<>(bands);
+            int i;
+            for (i = 0; i < bands; i++){
+                List<int[]> mine = blocks.subList(blocks.size() * i / bands,
+                        blocks.size() * (i + 1) / bands);
+                tasks.add(() -> {
+                    long[][] scratch = new long[2][];
+                    for (int[] block : mine)
+                        scratch = stepBlock(block, generations, scratch);
+                    return null;
+                });
+            }
+            try {
+                for (Future<Void> task : executor.invokeAll(tasks))
+                    task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Update was interrupted.", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Update failed.",
+                        e.getCause());
             }
         }
-        this.board = new_board;
+        long[] old = board;
+        board = next;
+        next = old;
+        generation += generations;
+        Arrays.fill(diff, -1L);
+        if (hashing)
+            rehash();
+        if (indexing)
+            reindex();
     }
     
-    // Calculate number of live neighbours. 
-    private int getNeighbours(int vert, int hor){
-        int count = 0;
-        int i, j;
-        for (i = vert - 1; i < vert + 2; i++){
-            for (j = hor - 1; j < hor + 2; j++){
-                if (i > -1 && j > -1 && i < size && j < size && (i != vert 
-                        || j != hor) && board[i][j]){
-                    count++;
-                }
-            } 
+    // Advance one block of rows from (inclusive) to to (exclusive) and
+    // words from to to of the current generation, writing its centre to the
+    // other buffer. The block is copied with up to generations rows and one
+    // word of halo on each side into a local buffer whose own ghost cells
+    // are empty. Where the halo is cut short by the edge of the board those
+    // are exactly the board's dead cells; elsewhere the wrong cells beyond
+    // the halo spread inwards one cell a generation, so never reach the
+    // centre. Returns the local buffers for reuse by the next block.
+    private long[][] stepBlock(int[] block, int generations,
+            long[][] scratch){
+        int from = block[0], to = block[1];
+        int top = Math.min(generations, from);
+        int bottom = Math.min(generations, size - to);
+        int left = block[2] > 0 ? 1 : 0;
+        int right = block[3] < words ? 1 : 0;
+        int rows = top + to - from + bottom;
+        int localWords = left + block[3] - block[2] + right;
+        int localStride = localWords + 2;
+        // The board's last word must stay masked even as the right halo
+        long localMask = block[3] + right == words ? lastMask : -1L;
+        int length = (rows + 2) * localStride;
+        if (scratch[0] == null || scratch[0].length < length){
+            scratch[0] = new long[length];
+            scratch[1] = new long[length];
+        }
+        long[] src = scratch[0];
+        long[] dst = scratch[1];
+        Arrays.fill(src, 0, length, 0L);
+        Arrays.fill(dst, 0, length, 0L);
+        int i, g;
+        for (i = 0; i < rows; i++)
+            System.arraycopy(board, (from - top + i + 1) * stride + block[2]
+                    + 1 - left, src, (i + 1) * localStride + 1, localWords);
+        for (g = 0; g < generations; g++){
+            // Rows within g of a halo's outer edge are already wrong, so
+            // only the shrinking region that can still reach the centre is
+            // computed
+            int first = top < generations ? 1 : 1 + g;
+            int last = bottom < generations ? rows : rows - g;
+            for (i = first; i <= last; i++)
+                BitRows.step(src, (i - 1) * localStride, i * localStride,
+                        (i + 1) * localStride, dst, i * localStride,
+                        localWords, localMask, rule);
+            long[] swap = src;
+            src = dst;
+            dst = swap;
+        }
+        for (i = from; i < to; i++)
+            System.arraycopy(src, (top + i - from + 1) * localStride + 1
+                    + left, next, (i + 1) * stride + block[2] + 1,
+                    block[3] - block[2]);
+        scratch[0] = src;
+        scratch[1] = dst;
+        return scratch;
+    }
+    
+    /**
+     * Records the statistics of every following generation into the given
+     * metrics, or stops recording them if null. The population recorded
+     * comes from the population index, which recording starts if it is not
+     * already kept and which is brought up to date within the time recorded.
+     * Allocation is recorded as unknown while generations run on an
+     * executor, since only the updating thread's allocation is measured.
+     * 
+     * @param metrics   metrics to record into, or null
+     */
+    public void setMetrics(SimulationMetrics metrics){
+        this.metrics = metrics;
+    }
+    
+    /**
+     * Returns the metrics each generation is recorded into.
+     * 
+     * @return the board's metrics, or null if none are set
+     */
+    public SimulationMetrics getMetrics(){
+        return metrics;
+    }
+    
+    /**
+     * Sets the rule used to compute each following generation.
+     * 
+     * @param rule  the new rule
+     * @exception IllegalArgumentException if rule is null
+     */
+    public void setRule(Rule rule) throws IllegalArgumentException{
+        if (rule == null)
+            throw new IllegalArgumentException("Rule must not be null.");
+        this.rule = rule;
+        // Unchanged tiles are only stable under the rule that produced them
+        Arrays.fill(diff, -1L);
+    }
+    
+    /**
+     * Returns the rule used to compute each generation.
+     * 
+     * @return the board's rule
+     */
+    public Rule getRule(){
+        return rule;
+    }
+    
+    /**
+     * Sets how cells beyond the edges of the board are treated by each
+     * following generation.
+     * 
+     * @param boundary  the new boundary mode
+     * @exception IllegalArgumentException if boundary is null
+     */
+    public void setBoundary(Boundary boundary) throws IllegalArgumentException{
+        if (boundary == null)
+            throw new IllegalArgumentException("Boundary must not be null.");
+        this.boundary = boundary;
+        Arrays.fill(diff, -1L);
+    }
+    
+    /**
+     * Returns how cells beyond the edges of the board are treated.
+     * 
+     * @return the board's boundary mode
+     */
+    public Boundary getBoundary(){
+        return boundary;
+    }
+    
+    /**
+     * Returns a 64-bit hash of the live cells. The first call hashes the
+     * whole board; from then on the hash is updated as cells change, at a
+     * cost proportional to the tiles that changed, so boards that are never
+     * hashed pay nothing for it. Boards of the same size with the same live
+     * cells have the same hash, and an empty board hashes to zero.
+     * 
+     * @return hash of the current generation
+     */
+    public long getHash(){
+        if (!hashing){
+            rehash();
+            hashing = true;
+        }
+        return hash;
+    }
+    
+    // Hash the whole board.
+    private void rehash(){
+        int i;
+        hash = 0;
+        for (i = 0; i < board.length; i++)
+            hash ^= wordHash(i, board[i]);
+    }
+    
+    // Fold the words changed by the last generation into the hash. Only
+    // tiles that changed need visiting.
+    private void hashChanges(){
+        int t, i;
+        for (t = 0; t < diff.length; t++){
+            if (diff[t] == 0)
+                continue;
+            int word = tileWord(t);
+            int rows = Math.min(TILE_ROWS, size - (t / words << TILE_SHIFT));
+            for (i = 0; i < rows; i++, word += stride)
+                if (board[word] != next[word])
+                    hash ^= wordHash(word, next[word])
+                            ^ wordHash(word, board[word]);
+        }
+    }
+    
+    // Hash of one word of cells at an index of the board, zero when the
+    // word is empty.
+    private static long wordHash(int index, long cells){
+        return cells == 0 ? 0
+                : LongHashSet.mix(cells + index * 0x9E3779B97F4A7C15L);
+    }
+    
+    /**
+     * Returns the number of generations the board has been advanced.
+     * 
+     * @return the current generation
+     */
+    public long getGeneration(){
+        return generation;
+    }
+    
+    // Compute rows from (inclusive) to to (exclusive) of the next generation.
+    private void stepRows(long[] src, long[] dst, int from, int to){
+        int i;
+        for (i = from; i < to; i++){
+            if (!activeRows[(i - 1) >>> TILE_SHIFT])
+                continue;
+            int tile = ((i - 1) >>> TILE_SHIFT) * words;
+            if (vectorised)
+                VectorRows.step(src, (i - 1) * stride, i * stride,
+                        (i + 1) * stride, dst, i * stride, words, lastMask,
+                        rule, active, diff, tile);
+            else
+                BitRows.step(src, (i - 1) * stride, i * stride, (i + 1) * stride,
+                        dst, i * stride, words, lastMask, rule, active, diff,
+                        tile);
+        }
+    }
+    
+    // Flag each tile which has itself or a neighbour changed since the last
+    // generation, then clear the changes ready for the next one. Unless the
+    // boundary is dead, tiles on the edges of the board neighbour each other
+    // through the ghost cells, so a change to one flags them all.
+    private void markActiveTiles(){
+        boolean edgeChanged = boundary != Boundary.DEAD && edgeChanged();
+        int t, w;
+        for (t = 0; t < tileRows; t++){
+            activeRows[t] = false;
+            for (w = 0; w < words; w++){
+                boolean changed = edgeChanged && (t == 0 || t == tileRows - 1
+                        || w == 0 || w == words - 1);
+                int r, c;
+                for (r = Math.max(t - 1, 0); r <= Math.min(t + 1, tileRows - 1);
+                        r++)
+                    for (c = Math.max(w - 1, 0); c <= Math.min(w + 1, words - 1);
+                            c++)
+                        changed |= diff[r * words + c] != 0;
+                active[t * words + w] = changed;
+                activeRows[t] |= changed;
+            }
         }
+        Arrays.fill(diff, 0);
+    }
+    
+    // Whether any tile on an edge of the board has changed.
+    private boolean edgeChanged(){
+        int t, w;
+        for (t = 0; t < tileRows; t++)
+            if (diff[t * words] != 0 || diff[t * words + words - 1] != 0)
+                return true;
+        for (w = 0; w < words; w++)
+            if (diff[w] != 0 || diff[(tileRows - 1) * words + w] != 0)
+                return true;
+        return false;
+    }
+    
+    /**
+     * Returns the number of tiles that were recomputed in the last generation.
+     * Tiles are 64 by 64 cells; tiles whose neighbourhood did not change in
+     * the previous generation are skipped.
+     * 
+     * @return number of tiles recomputed by the last update
+     */
+    public int getActiveTiles(){
+        int count = 0;
+        for (boolean tile : active)
+            if (tile)
+                count++;
         return count;
     }
     
+    // Compute the next generation as row bands on the executor, waiting for
+    // every band to finish before returning.
+    private void stepBands(){
+        try {
+            for (Future<Void> band : executor.invokeAll(bandTasks))
+                band.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Update was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Update failed.", e.getCause());
+        }
+    }
+    
+    // Build one task per row band. Tasks read the buffers when they run so
+    // the same tasks are reused every generation. Bands start on tile
+    // boundaries so no two bands record changes to the same tile.
+    private List<Callable<Void>> createBandTasks(){
+        List<Callable<Void>> tasks = new ArrayList<>(bands);
+        int i;
+        for (i = 0; i < bands; i++){
+            int from = 1 + Math.min(size, (int) ((long) tileRows * i / bands)
+                    << TILE_SHIFT);
+            int to = 1 + Math.min(size, (int) ((long) tileRows * (i + 1)
+                    / bands) << TILE_SHIFT);
+            tasks.add(() -> {
+                stepRows(board, next, from, to);
+                return null;
+            });
+        }
+        return tasks;
+    }
+    
+    /**
+     * Sets the number of threads used to compute each generation. With one
+     * thread generations are computed serially on the caller; with more the
+     * board is split into that many row bands which run on a fork-join pool
+     * owned by this board. Results are identical either way. The pool's
+     * threads are kept until the board is closed or its threads or executor
+     * are set again, so a board left with more than one thread must be
+     * closed.
+     * 
+     * @param threads number of threads to use
+     * @exception IllegalArgumentException if threads is less than one
+     */
+    public void setThreads(int threads) throws IllegalArgumentException{
+        if (threads < 1)
+            throw new IllegalArgumentException("Threads must be positive.");
+        if (threads == 1)
+            setExecutor(null, 1);
+        else
+            setExecutor(new ForkJoinPool(threads), threads);
+        ownsExecutor = threads > 1;
+    }
+    
+    /**
+     * Computes each generation as row bands on the given executor, or serially
+     * if it is null. The executor is not shut down by the board.
+     * 
+     * @param executor  executor to run row bands on, or null for serial updates
+     * @param bands     number of row bands to split the board into
+     * @exception IllegalArgumentException if bands is less than one
+     */
+    public void setExecutor(ExecutorService executor, int bands)
+            throws IllegalArgumentException{
+        if (bands < 1)
+            throw new IllegalArgumentException("Bands must be positive.");
+        if (ownsExecutor)
+            this.executor.shutdown();
+        this.executor = executor;
+        this.ownsExecutor = false;
+        this.bands = executor == null ? 1 : bands;
+        this.bandTasks = executor == null ? null : createBandTasks();
+    }
+    
+    /**
+     * Shuts down the thread pool created by setThreads(), if any, and goes
+     * back to computing generations serially. The board can still be used
+     * afterwards. An executor given to setExecutor() is left running.
+     */
+    @Override
+    public void close(){
+        setExecutor(null, 1);
+    }
+    
+    /**
+     * Returns whether the JDK Vector API is available, which needs the JVM
+     * to be started with --add-modules jdk.incubator.vector.
+     * 
+     * @return true if boards can be vectorised
+     */
+    public static boolean isVectorAvailable(){
+        return VECTOR_AVAILABLE;
+    }
+    
+    /**
+     * Sets whether generations are computed with the JDK Vector API, several
+     * words of 64 cells per instruction, instead of one word at a time.
+     * Results are identical either way. If the Vector API is not available
+     * the board stays scalar.
+     * 
+     * @param vectorised    true to use the Vector API when available
+     */
+    public void setVectorised(boolean vectorised){
+        this.vectorised = vectorised && VECTOR_AVAILABLE;
+    }
+    
+    /**
+     * Returns whether generations are computed with the JDK Vector API.
+     * 
+     * @return true if the board is vectorised
+     */
+    public boolean isVectorised(){
+        return vectorised;
+    }
+    
+    /**
+     * Returns the number of row bands each generation is split into; one when
+     * updates are serial.
+     * 
+     * @return number of row bands per generation
+     */
+    public int getThreads(){
+        return bands;
+    }
+    
+    // Check a cell lies on the board, matching the exception a plain 2-d
+    // array would throw.
+    private void checkCell(int x, int y){
+        if (x < 0 || y < 0 || x >= size || y >= size)
+            throw new ArrayIndexOutOfBoundsException("Cell (" + x + ", " + y
+                    + ") is outside a board of size " + size + ".");
+    }
+    
+    // Index of the word holding cell (x, y).
+    private int wordIndex(int x, int y){
+        return (x + 1) * stride + (y >>> 6) + 1;
+    }
+    
+    // Index of the word holding the top row of a tile.
+    private int tileWord(int tile){
+        return ((tile / words << TILE_SHIFT) + 1) * stride + tile % words + 1;
+    }
+    
+    // Index of the tile holding cell (x, y).
+    private int tileIndex(int x, int y){
+        return (x >>> TILE_SHIFT) * words + (y >>> 6);
+    }
+    
     /**
      * Returns an array of  Strings of the the names of all the shapes that can
      * be added to the board. This can be used for reference when using
@@ -129,23 +667,313 @@ public class Board {
      *          added to the board.
      */
     public String[] getShapes(){
-        return (String[]) shapes.keySet().toArray(new String[shapes.size()]);
+        return Shapes.names();
     }
     
     /**
-     * Returns the current state of the board.
+     * Returns a copy of the current state of the board. Use isAlive() or
+     * forEachLive() to read the board without copying it.
      * 
      * @return a 2-d boolean array representing the current board state
      */
     public boolean[][] getBoardState(){
         boolean[][] boardCopy = new boolean[size][size];
         int i, j;
-        for (i = 0; i < size; i++)
+        for (i = 0; i < size; i++){
+            int row = (i + 1) * stride + 1;
             for (j = 0; j < size; j++)
-                boardCopy[i][j] = board[i][j];
+                boardCopy[i][j] = (board[row + (j >>> 6)] >>> j & 1L) != 0;
+        }
         return boardCopy;
     }
     
+    /**
+     * Returns whether the cell at row x, column y is alive.
+     * 
+     * @param x Row of cell
+     * @param y Column of cell
+     * @return true if the cell is alive
+     */
+    public boolean isAlive(int x, int y){
+        checkCell(x, y);
+        return (board[wordIndex(x, y)] >>> y & 1L) != 0;
+    }
+    
+    /**
+     * Calls the visitor with the row and column of every live cell, in row
+     * order, without copying the board. The board must not be updated while
+     * it is being visited.
+     * 
+     * @param visitor visitor to be called for each live cell
+     */
+    public void forEachLive(CellVisitor visitor){
+        BitRows.forEachLive(board, size, words, stride, visitor);
+    }
+    
+    /**
+     * Copies the current state of the board into a snapshot which can be
+     * read while the board goes on being updated. The given snapshot is
+     * reused if it was taken from a board of the same size, so repeated
+     * snapshots need not allocate. The snapshot also takes a copy of the
+     * live cells in each tile, starting the population index if needed, so
+     * a DensityPyramid can be brought up to date from it a tile at a time.
+     * 
+     * @param reuse snapshot to copy into, or null to create a new one
+     * @return a snapshot of the current state
+     */
+    public BoardSnapshot snapshot(BoardSnapshot reuse){
+        if (reuse == null || !reuse.fits(size))
+            reuse = new BoardSnapshot(size, words, stride);
+        getPopulation();
+        reuse.copyFrom(board, tileCounts, generation);
+        return reuse;
+    }
+    
+    /**
+     * Replaces the board's cells and generation with those of a snapshot
+     * taken from a board of the same size, such as one rewound to from a
+     * History. The rule, boundary and other settings are kept.
+     * 
+     * @param snapshot  snapshot to restore
+     * @exception IllegalArgumentException if the snapshot is of a board of a
+     *                                     different size
+     */
+    public void restore(BoardSnapshot snapshot) throws IllegalArgumentException{
+        if (!snapshot.fits(size))
+            throw new IllegalArgumentException("Snapshot differs in size.");
+        System.arraycopy(snapshot.cells(), 0, board, 0, board.length);
+        replaced(snapshot.getGeneration());
+    }
+    
+    /**
+     * Returns the number of live cells on the board. The first call counts
+     * the whole board and starts a count of each tile's live cells, which is
+     * then kept up to date as cells change at a cost proportional to the
+     * tiles that changed, so later calls take constant time.
+     * 
+     * @return the number of live cells
+     */
+    public long getPopulation(){
+        if (!indexing){
+            reindex();
+            indexing = true;
+        }
+        return population;
+    }
+    
+    /**
+     * Returns the number of live cells in a rectangle of the board. Tiles
+     * wholly inside the rectangle are summed from the population index in
+     * constant time, so only the cells of tiles crossing its border are
+     * counted one word at a time. The first call starts the index, as
+     * getPopulation() does.
+     * 
+     * @param x         first row of the rectangle
+     * @param y         first column of the rectangle
+     * @param rows      number of rows in the rectangle
+     * @param columns   number of columns in the rectangle
+     * @return the number of live cells in the rectangle
+     * @exception IllegalArgumentException if rows or columns is negative
+     * @exception ArrayIndexOutOfBoundsException if the rectangle is not
+     *                                           wholly on the board
+     */
+    public long getPopulation(int x, int y, int rows, int columns)
+            throws IllegalArgumentException, ArrayIndexOutOfBoundsException{
+        if (rows < 0 || columns < 0)
+            throw new IllegalArgumentException(
+                    "Rectangle must not have a negative size.");
+        if (x < 0 || y < 0 || (long) x + rows > size
+                || (long) y + columns > size)
+            throw new ArrayIndexOutOfBoundsException("Rectangle at (" + x
+                    + ", " + y + ") of " + rows + " by " + columns
+                    + " is outside a board of size " + size + ".");
+        if (rows == 0 || columns == 0)
+            return 0;
+        getPopulation();
+        if (sumsStale || tileSums == null)
+            sumTiles();
+        int endX = x + rows;
+        int endY = y + columns;
+        // Tile rows and words lying wholly inside the rectangle
+        int firstTile = (x + TILE_ROWS - 1) >>> TILE_SHIFT;
+        int lastTile = endX == size ? tileRows : endX >>> TILE_SHIFT;
+        int firstWord = (y + 63) >>> 6;
+        int lastWord = endY == size ? words : endY >>> 6;
+        long count = 0;
+        int innerFrom = 0, innerTo = 0;
+        if (firstTile < lastTile && firstWord < lastWord){
+            int width = words + 1;
+            count = tileSums[lastTile * width + lastWord]
+                    - tileSums[firstTile * width + lastWord]
+                    - tileSums[lastTile * width + firstWord]
+                    + tileSums[firstTile * width + firstWord];
+            innerFrom = firstTile << TILE_SHIFT;
+            innerTo = Math.min(size, lastTile << TILE_SHIFT);
+        }
+        int i;
+        for (i = x; i < endX; i++)
+            if (i >= innerFrom && i < innerTo)
+                count += countRow(i, y, endY, firstWord, lastWord);
+            else
+                count += countRow(i, y, endY, 0, 0);
+        return count;
+    }
+    
+    // Count the live cells of row x from column from (inclusive) to column
+    // to (exclusive), skipping the words from skipFrom to skipTo.
+    private long countRow(int x, int from, int to, int skipFrom, int skipTo){
+        int offset = rowOffset(x);
+        int first = from >>> 6;
+        int last = (to - 1) >>> 6;
+        long count = 0;
+        int w;
+        for (w = first; w <= last; w++){
+            if (w >= skipFrom && w < skipTo){
+                w = skipTo - 1;
+                continue;
+            }
+            long mask = -1L;
+            if (w == first)
+                mask &= -1L << (from & 63);
+            if (w == last)
+                mask &= -1L >>> (63 - ((to - 1) & 63));
+            count += Long.bitCount(board[offset + w] & mask);
+        }
+        return count;
+    }
+    
+    // Count every tile afresh.
+    private void reindex(){
+        population = 0;
+        Arrays.fill(tileCounts, 0);
+        int t;
+        for (t = 0; t < tileCounts.length; t++)
+            countTile(t);
+    }
+    
+    // Count again the tiles changed by the last generation.
+    private void countChangedTiles(){
+        int t;
+        for (t = 0; t < diff.length; t++)
+            if (diff[t] != 0)
+                countTile(t);
+    }
+    
+    private void countTile(int tile){
+        int word = tileWord(tile);
+        int rows = Math.min(TILE_ROWS, size - (tile / words << TILE_SHIFT));
+        int count = 0;
+        int i;
+        for (i = 0; i < rows; i++, word += stride)
+            count += Long.bitCount(board[word]);
+        population += count - tileCounts[tile];
+        tileCounts[tile] = count;
+        sumsStale = true;
+    }
+    
+    // Rebuild the summed-area table of the tile counts.
+    private void sumTiles(){
+        int width = words + 1;
+        if (tileSums == null)
+            tileSums = new long[(tileRows + 1) * width];
+        int t, w;
+        for (t = 0; t < tileRows; t++){
+            long row = 0;
+            for (w = 0; w < words; w++){
+                row += tileCounts[t * words + w];
+                tileSums[(t + 1) * width + w + 1] = tileSums[t * width + w + 1]
+                        + row;
+            }
+        }
+        sumsStale = false;
+    }
+    
+    /**
+     * Returns the number of cells whose state differs from the previous
+     * generation, including cells changed by hand since the last update.
+     * 
+     * @return number of changed cells
+     */
+    public long getChangeCount(){
+        return countChanges(true, true);
+    }
+    
+    /**
+     * Returns the number of cells that are alive now but were dead in the
+     * previous generation, including cells changed by hand since the last
+     * update.
+     * 
+     * @return number of cells that came alive
+     */
+    public long getBirthCount(){
+        return countChanges(true, false);
+    }
+    
+    /**
+     * Returns the number of cells that were alive in the previous generation
+     * but are dead now, including cells changed by hand since the last
+     * update.
+     * 
+     * @return number of cells that died
+     */
+    public long getDeathCount(){
+        return countChanges(false, true);
+    }
+    
+    // Count cells that changed since the previous generation, choosing
+    // whether to count cells that came alive, cells that died, or both.
+    private long countChanges(boolean births, boolean deaths){
+        long count = 0;
+        int t, i;
+        for (t = 0; t < diff.length; t++){
+            if (diff[t] == 0)
+                continue;
+            int word = tileWord(t);
+            int rows = Math.min(TILE_ROWS, size - (t / words << TILE_SHIFT));
+            for (i = 0; i < rows; i++, word += stride){
+                long changed = board[word] ^ next[word];
+                if (!births)
+                    changed &= ~board[word];
+                if (!deaths)
+                    changed &= board[word];
+                count += Long.bitCount(changed);
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Calls births with every cell that is alive now but was dead in the
+     * previous generation, and deaths with every cell that has died since,
+     * without copying the board. Cells changed by hand since the last update
+     * are included.
+     * 
+     * @param births visitor to be called for each cell that came alive
+     * @param deaths visitor to be called for each cell that died
+     */
+    public void forEachChange(CellVisitor births, CellVisitor deaths){
+        int t, i;
+        for (t = 0; t < diff.length; t++){
+            if (diff[t] == 0)
+                continue;
+            int word = tileWord(t);
+            int x = t / words << TILE_SHIFT;
+            int y = t % words << 6;
+            int rows = Math.min(TILE_ROWS, size - x);
+            for (i = 0; i < rows; i++, word += stride){
+                long changed = board[word] ^ next[word];
+                while (changed != 0){
+                    int bit = Long.numberOfTrailingZeros(changed);
+                    if ((board[word] >>> bit & 1L) != 0)
+                        births.visit(x + i, y + bit);
+                    else
+                        deaths.visit(x + i, y + bit);
+                    changed &= changed - 1;
+                }
+            }
+        }
+    }
+    
     /**
      * Changes the state of a single cell at row x, column y on the board.
      * 
@@ -153,25 +981,99 @@ public class Board {
      * @param y Column of cell to be changed
      */
     public void flipCell(int x, int y){
-        board[x][y] = !board[x][y];
+        checkCell(x, y);
+        setWord(wordIndex(x, y), board[wordIndex(x, y)] ^ 1L << y);
+        diff[tileIndex(x, y)] |= 1L << y;
     }
     
     /**
      * Add a given shape to the board.
      * 
-     * @param shape String representation of shape to be added
+     * @param shape String representation of shape to be added, or the path
+     *              of an RLE, Life 1.06 or plaintext pattern file
      * @param x     row of upper right corner where shape should be added
      * @param y     column of upper right corner where shape should be added
+     * @exception IllegalArgumentException if the shape is not known or its
+     *            pattern file cannot be read
      */
-    public void addShape(String shape, int x, int y){
-        int[] currShape = (int[]) shapes.get(shape);
+    public void addShape(String shape, int x, int y)
+            throws IllegalArgumentException{
+        int[] currShape = Shapes.get(shape);
         int i;
         for (i=0; i<currShape.length/2; i++){
-            this.board[x+currShape[2*i]][y+currShape[2*i+1]] = true;
+            int row = x + currShape[2*i];
+            int col = y + currShape[2*i+1];
+            setAlive(row, col);
         }
     }
     
+    /**
+     * Add a pattern to the board as it is read, without caching it. This
+     * suits very large patterns that are only added once.
+     * 
+     * @param in    text of an RLE, Life 1.06 or plaintext pattern
+     * @param x     row of upper right corner where pattern should be added
+     * @param y     column of upper right corner where pattern should be added
+     * @throws IOException if the pattern cannot be read or is not valid
+     */
+    public void addPattern(Reader in, int x, int y) throws IOException{
+        PatternReader.read(in, (i, j) -> setAlive(x + i, y + j));
+    }
+    
+    // Bring a cell to life.
+    private void setAlive(int x, int y){
+        checkCell(x, y);
+        setWord(wordIndex(x, y), board[wordIndex(x, y)] | 1L << y);
+        diff[tileIndex(x, y)] |= 1L << y;
+    }
+    
+    // Replace a word of the current generation, updating the hash and the
+    // population index.
+    private void setWord(int word, long cells){
+        if (hashing)
+            hash ^= wordHash(word, board[word]) ^ wordHash(word, cells);
+        if (indexing){
+            int delta = Long.bitCount(cells) - Long.bitCount(board[word]);
+            tileCounts[((word / stride - 1) >>> TILE_SHIFT) * words
+                    + word % stride - 1] += delta;
+            population += delta;
+            sumsStale = true;
+        }
+        board[word] = cells;
+    }
+    
     public int getSize(){
         return this.size;
     }
+    
+    // Packed cells of the current generation, for reading and writing whole
+    // rows from elsewhere in the package. Row x starts at rowOffset(x) and is
+    // words() longs long.
+    long[] cells(){
+        return board;
+    }
+    
+    int words(){
+        return words;
+    }
+    
+    int rowOffset(int x){
+        return (x + 1) * stride + 1;
+    }
+    
+    // Record that the cells were replaced from elsewhere in the package,
+    // setting the generation and marking every tile as changed. Columns past
+    // the edge of the board are cleared.
+    void replaced(long generation){
+        int i;
+        if (words > 0)
+            for (i = 0; i < size; i++)
+                board[rowOffset(i) + words - 1] &= lastMask;
+        this.generation = generation;
+        Arrays.fill(diff, -1L);
+        if (hashing)
+            rehash();
+        if (indexing)
+            reindex();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Saves and loads boards in a compact binary format.
+ * 
+ * A file starts with a header of the magic number "GOLB", the format
+ * version, flags, the board size, the generation and the rule, padded to a
+ * multiple of eight bytes. The flags hold whether the cells are compressed
+ * and the board's boundary mode. The cells follow as the board's packed rows of
+ * little-endian longs, 64 cells to a long. Uncompressed cells are written
+ * and read through memory-mapped regions of the file, so they are copied
+ * straight between the board and the file without intermediate buffers.
+ * Compressed files instead hold runs, each an int count of empty longs, an
+ * int count of literal longs, and the literal longs themselves.
+ * 
+ * @author Dennis Windsor
+ */
+public final class BoardFile {
+    private static final int MAGIC = 0x424C4F47;
+    private static final int VERSION = 1;
+    private static final int FLAG_RLE = 1;
+    // Flag bits holding the boundary mode's ordinal
+    private static final int BOUNDARY_SHIFT = 1;
+    private static final int BOUNDARY_MASK = 3;
+    // Longest rule accepted when loading
+    private static final int MAX_RULE = 64;
+    // Largest region of the file mapped at once
+    private static final long MAP_CHUNK = 1L << 30;
+    // Size of the buffer compressed data is streamed through
+    private static final int BUFFER = 1 << 20;
+    // Longest literal run written in compressed files
+    private static final int MAX_LITERALS = (BUFFER - 8) / 8;
+    
+    private BoardFile(){
+    }
+    
+    /**
+     * Writes the board, its generation, rule and boundary mode to a file,
+     * replacing any existing file.
+     * 
+     * @param board     board to be saved
+     * @param path      file to write
+     * @param compress  whether to run-length compress empty regions
+     * @throws IOException if the file cannot be written
+     */
+    public static void save(Board board, Path path, boolean compress)
+            throws IOException{
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = header(board, compress);
+            while (header.hasRemaining())
+                channel.write(header);
+            if (compress)
+                writeRuns(board, channel);
+            else
+                writeMapped(board, channel, channel.position());
+            channel.force(false);
+        }
+    }
+    
+    /**
+     * Reads a board saved with save(), including its generation, rule and
+     * boundary mode.
+     * 
+     * @param path  file to read
+     * @return the saved board
+     * @throws IOException if the file cannot be read or is not a saved board
+     */
+    public static Board load(Path path) throws IOException{
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(24)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header);
+            header.flip();
+            if (header.getInt() != MAGIC)
+                throw new IOException("Not a saved board: " + path);
+            if (header.getInt() != VERSION)
+                throw new IOException("Unsupported board file version.");
+            int flags = header.getInt();
+            int size = header.getInt();
+            long generation = header.getLong();
+            ByteBuffer ruleLength = ByteBuffer.allocate(4)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, ruleLength);
+            ruleLength.flip();
+            int length = ruleLength.getInt();
+            if (length < 0 || length > MAX_RULE)
+                throw new IOException("Invalid rule length: " + length);
+            ByteBuffer rule = ByteBuffer.allocate(length);
+            readFully(channel, rule);
+            String ruleName = new String(rule.array(),
+                    StandardCharsets.US_ASCII);
+            if (size < 0)
+                throw new IOException("Invalid board size: " + size);
+            Board board = new Board(size);
+            try {
+                board.setRule(Rule.parse(ruleName));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Unsupported rule: " + ruleName, e);
+            }
+            int boundary = flags >>> BOUNDARY_SHIFT & BOUNDARY_MASK;
+            if (boundary >= Boundary.values().length)
+                throw new IOException("Unsupported boundary: " + boundary);
+            board.setBoundary(Boundary.values()[boundary]);
+            long start = align(channel.position());
+            if ((flags & FLAG_RLE) != 0){
+                channel.position(start);
+                readRuns(board, channel);
+            }
+            else
+                readMapped(board, channel, start);
+            board.replaced(generation);
+            return board;
+        }
+    }
+    
+    // Build the header for a board, padded so the cells start on a multiple
+    // of eight bytes.
+    private static ByteBuffer header(Board board, boolean compress){
+        byte[] rule = board.getRule().toString()
+                .getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer header = ByteBuffer.allocate((int) align(28 + rule.length))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt((compress ? FLAG_RLE : 0)
+                | board.getBoundary().ordinal() << BOUNDARY_SHIFT);
+        header.putInt(board.getSize());
+        header.putLong(board.getGeneration());
+        header.putInt(rule.length);
+        header.put(rule);
+        header.position(0);
+        return header;
+    }
+    
+    private static long align(long position){
+        return (position + 7) & ~7L;
+    }
+    
+    // Write every row through mapped regions of at most MAP_CHUNK bytes.
+    private static void writeMapped(Board board, FileChannel channel,
+            long position) throws IOException{
+        int size = board.getSize();
+        int words = board.words();
+        long[] cells = board.cells();
+        int rowsPerChunk = rowsPerChunk(words);
+        int row = 0;
+        while (row < size){
+            int rows = Math.min(rowsPerChunk, size - row);
+            long bytes = (long) rows * words * 8;
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE,
+                    position, bytes);
+            LongBuffer longs = map.order(ByteOrder.LITTLE_ENDIAN)
+                    .asLongBuffer();
+            int i;
+            for (i = 0; i < rows; i++, row++)
+                longs.put(cells, board.rowOffset(row), words);
+            map.force();
+            position += bytes;
+        }
+    }
+    
+    // Read every row through mapped regions of at most MAP_CHUNK bytes.
+    private static void readMapped(Board board, FileChannel channel,
+            long position) throws IOException{
+        int size = board.getSize();
+        int words = board.words();
+        long[] cells = board.cells();
+        if (channel.size() - position < (long) size * words * 8)
+            throw new EOFException("Board file is truncated.");
+        int rowsPerChunk = rowsPerChunk(words);
+        int row = 0;
+        while (row < size){
+            int rows = Math.min(rowsPerChunk, size - row);
+            long bytes = (long) rows * words * 8;
+            LongBuffer longs = channel.map(FileChannel.MapMode.READ_ONLY,
+                    position, bytes).order(ByteOrder.LITTLE_ENDIAN)
+                    .asLongBuffer();
+            int i;
+            for (i = 0; i < rows; i++, row++)
+                longs.get(cells, board.rowOffset(row), words);
+            position += bytes;
+        }
+    }
+    
+    private static int rowsPerChunk(int words){
+        return (int) Math.max(1, MAP_CHUNK / Math.max(1, words * 8L));
+    }
+    
+    // Write the cells as runs of empty and literal longs.
+    private static void writeRuns(Board board, FileChannel channel)
+            throws IOException{
+        int size = board.getSize();
+        int words = board.words();
+        long[] cells = board.cells();
+        ByteBuffer out = ByteBuffer.allocateDirect(BUFFER)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        int empty = 0;
+        int literals = 0;
+        int literalStart = 0;
+        int row, w;
+        for (row = 0; row < size; row++){
+            int offset = board.rowOffset(row);
+            for (w = 0; w < words; w++){
+                long word = cells[offset + w];
+                if (word == 0){
+                    if (literals > 0){
+                        writeRun(channel, out, empty, cells, literalStart,
+                                literals);
+                        empty = 0;
+                        literals = 0;
+                    }
+                    if (++empty == Integer.MAX_VALUE){
+                        writeRun(channel, out, empty, cells, 0, 0);
+                        empty = 0;
+                    }
+                }
+                else {
+                    // Literal runs stay within a row so they are contiguous
+                    if (literals > 0 && (literals == MAX_LITERALS
+                            || literalStart + literals != offset + w)){
+                        writeRun(channel, out, empty, cells, literalStart,
+                                literals);
+                        empty = 0;
+                        literals = 0;
+                    }
+                    if (literals == 0)
+                        literalStart = offset + w;
+                    literals++;
+                }
+            }
+        }
+        if (empty > 0 || literals > 0)
+            writeRun(channel, out, empty, cells, literalStart, literals);
+        out.flip();
+        while (out.hasRemaining())
+            channel.write(out);
+    }
+    
+    private static void writeRun(FileChannel channel, ByteBuffer out,
+            int empty, long[] cells, int start, int literals)
+            throws IOException{
+        if (out.remaining() < 8 + literals * 8){
+            out.flip();
+            while (out.hasRemaining())
+                channel.write(out);
+            out.clear();
+        }
+        out.putInt(empty);
+        out.putInt(literals);
+        out.asLongBuffer().put(cells, start, literals);
+        out.position(out.position() + literals * 8);
+    }
+    
+    // Read runs of empty and literal longs into a new, empty board.
+    private static void readRuns(Board board, FileChannel channel)
+            throws IOException{
+        int size = board.getSize();
+        int words = board.words();
+        long[] cells = board.cells();
+        long total = (long) size * words;
+        long word = 0;
+        ByteBuffer in = ByteBuffer.allocateDirect(BUFFER)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        in.limit(0);
+        while (word < total){
+            fill(channel, in, 8);
+            int empty = in.getInt();
+            int literals = in.getInt();
+            if (empty < 0 || literals < 0 || literals > MAX_LITERALS
+                    || word + empty + literals > total)
+                throw new IOException("Corrupt board file.");
+            word += empty;
+            fill(channel, in, literals * 8);
+            while (literals-- > 0){
+                cells[board.rowOffset((int) (word / words))
+                        + (int) (word % words)] = in.getLong();
+                word++;
+            }
+        }
+    }
+    
+    // Make sure at least bytes bytes are available to read from the buffer.
+    private static void fill(FileChannel channel, ByteBuffer in, int bytes)
+            throws IOException{
+        if (in.remaining() >= bytes)
+            return;
+        in.compact();
+        while (in.position() < bytes)
+            if (channel.read(in) < 0)
+                throw new EOFException("Board file is truncated.");
+        in.flip();
+    }
+    
+    private static void readFully(FileChannel channel, ByteBuffer buffer)
+            throws IOException{
+        while (buffer.hasRemaining())
+            if (channel.read(buffer) < 0)
+                throw new EOFException("Board file is truncated.");
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import java.util.Arrays;
+
+/**
+ * A copy of the state of a board at one generation, kept in the board's
+ * packed form. Snapshots are taken with Board.snapshot() and can be read on
+ * one thread while the board is updated on another.
+ * 
+ * @author Dennis Windsor
+ */
+public class BoardSnapshot {
+    private final int size;
+    private final int words;
+    private final int stride;
+    private final long[] cells;
+    // Live cells in each of the board's tiles, in the order Board keeps
+    // them, and whether they match the cells
+    private final int[] tileCounts;
+    private boolean counted;
+    private long generation;
+    
+    // Create an empty snapshot with the layout of a board of the given size.
+    BoardSnapshot(int size, int words, int stride){
+        this.size = size;
+        this.words = words;
+        this.stride = stride;
+        this.cells = new long[(size + 2) * stride];
+        this.tileCounts = new int[((size + (1 << Board.TILE_SHIFT) - 1)
+                >>> Board.TILE_SHIFT) * words];
+        this.counted = true;
+    }
+    
+    // Check the snapshot can hold a board of the given size.
+    boolean fits(int size){
+        return this.size == size;
+    }
+    
+    // Copy packed cells and their tile counts from a board.
+    void copyFrom(long[] board, int[] tileCounts, long generation){
+        System.arraycopy(board, 0, cells, 0, cells.length);
+        System.arraycopy(tileCounts, 0, this.tileCounts, 0,
+                this.tileCounts.length);
+        counted = true;
+        this.generation = generation;
+    }
+    
+    // Set the generation after the cells were written in place. The tile
+    // counts are then taken again when next asked for.
+    void setGeneration(long generation){
+        this.generation = generation;
+        counted = false;
+    }
+    
+    /**
+     * Returns the generation of the board when the snapshot was taken.
+     * 
+     * @return the generation of the snapshot
+     */
+    public long getGeneration(){
+        return generation;
+    }
+    
+    public int getSize(){
+        return size;
+    }
+    
+    /**
+     * Returns whether the cell at row x, column y was alive.
+     * 
+     * @param x Row of cell
+     * @param y Column of cell
+     * @return true if the cell was alive
+     */
+    public boolean isAlive(int x, int y){
+        if (x < 0 || y < 0 || x >= size || y >= size)
+            throw new ArrayIndexOutOfBoundsException("Cell (" + x + ", " + y
+                    + ") is outside a board of size " + size + ".");
+        return (cells[(x + 1) * stride + (y >>> 6) + 1] >>> y & 1L) != 0;
+    }
+    
+    /**
+     * Calls the visitor with the row and column of every live cell, in row
+     * order.
+     * 
+     * @param visitor visitor to be called for each live cell
+     */
+    public void forEachLive(CellVisitor visitor){
+        BitRows.forEachLive(cells, size, words, stride, visitor);
+    }
+    
+    /**
+     * Returns the number of cells whose state differs from an earlier
+     * snapshot of a board of the same size.
+     * 
+     * @param previous  snapshot to compare with
+     * @return number of changed cells
+     * @exception IllegalArgumentException if the snapshots differ in size
+     */
+    public long getChangeCount(BoardSnapshot previous)
+            throws IllegalArgumentException{
+        checkSize(previous);
+        long count = 0;
+        int i;
+        for (i = stride; i < cells.length - stride; i++)
+            count += Long.bitCount(cells[i] ^ previous.cells[i]);
+        return count;
+    }
+    
+    /**
+     * Calls births with every cell alive in this snapshot but dead in an
+     * earlier one, and deaths with every cell alive in the earlier snapshot
+     * but dead in this one.
+     * 
+     * @param previous  snapshot to compare with
+     * @param births    visitor to be called for each cell that came alive
+     * @param deaths    visitor to be called for each cell that died
+     * @exception IllegalArgumentException if the snapshots differ in size
+     */
+    public void forEachChange(BoardSnapshot previous, CellVisitor births,
+            CellVisitor deaths) throws IllegalArgumentException{
+        checkSize(previous);
+        int i, w;
+        for (i = 0; i < size; i++){
+            int row = (i + 1) * stride;
+            for (w = 1; w <= words; w++){
+                long now = cells[row + w];
+                long changed = now ^ previous.cells[row + w];
+                while (changed != 0){
+                    int bit = Long.numberOfTrailingZeros(changed);
+                    if ((now >>> bit & 1L) != 0)
+                        births.visit(i, ((w - 1) << 6) + bit);
+                    else
+                        deaths.visit(i, ((w - 1) << 6) + bit);
+                    changed &= changed - 1;
+                }
+            }
+        }
+    }
+    
+    // Packed cells of the snapshot, for reading and writing whole rows from
+    // elsewhere in the package. Row x starts at rowOffset(x). Ghost cells
+    // must be left empty.
+    long[] cells(){
+        return cells;
+    }
+    
+    int rowOffset(int x){
+        return (x + 1) * stride + 1;
+    }
+    
+    // Live cells in each tile of the board, tile (x, y) covering rows from
+    // x << Board.TILE_SHIFT and word y of each row. Must not be changed.
+    int[] tileCounts(){
+        if (!counted){
+            Arrays.fill(tileCounts, 0);
+            int i, w;
+            for (i = 0; i < size; i++){
+                int tile = (i >>> Board.TILE_SHIFT) * words;
+                int offset = rowOffset(i);
+                for (w = 0; w < words; w++)
+                    tileCounts[tile + w] += Long.bitCount(cells[offset + w]);
+            }
+            counted = true;
+        }
+        return tileCounts;
+    }
+    
+    private void checkSize(BoardSnapshot other){
+        if (other.size != size)
+            throw new IllegalArgumentException("Snapshots differ in size.");
+    }
+}
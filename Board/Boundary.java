@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+/**
+ * How a bounded board treats the cells beyond its edges.
+ * 
+ * @author Dennis Windsor
+ */
+public enum Boundary {
+    /** Cells beyond the edges are always dead. */
+    DEAD,
+    /**
+     * The board wraps around: the cell beyond the last column is the first
+     * column of the same row, and likewise for rows.
+     */
+    TORUS,
+    /**
+     * Columns wrap around as on a torus, while the row beyond the last row is
+     * the first row reversed, and likewise for the row before the first.
+     */
+    KLEIN,
+    /** Each edge reflects the cells next to it, as if seen in a mirror. */
+    MIRROR
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+/**
+ * Callback used to read cells of a board without copying it.
+ * 
+ * @author Dennis Windsor
+ */
+@FunctionalInterface
+public interface CellVisitor {
+    
+    /**
+     * Called for a cell of the board.
+     * 
+     * @param x Row of the cell
+     * @param y Column of the cell
+     */
+    void visit(int x, int y);
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import java.util.Arrays;
+
+/**
+ * Watches the hashes of successive generations of a board and reports when
+ * the board dies out, settles into a still life or starts to oscillate. The
+ * hashes of the last maxPeriod generations are kept in a ring buffer, with an
+ * index from hash to generation, so each generation is checked in constant
+ * time whatever the period looked for.
+ * 
+ * A cycle is found the first time a generation repeats one within maxPeriod
+ * generations of it, so the generations must be added one after another
+ * from before the cycle starts. Hashes are trusted not to collide, and a hash
+ * of zero is taken to be an empty board, as with Board.getHash().
+ * 
+ * @author Dennis Windsor
+ */
+public class CycleDetector {
+    
+    /**
+     * Kinds of cycle that can be detected.
+     */
+    public enum Kind {
+        /** Every cell has died. */
+        EXTINCTION,
+        /** The board no longer changes. */
+        STILL_LIFE,
+        /** The board repeats itself every period generations. */
+        OSCILLATOR
+    }
+    
+    /**
+     * A detected cycle: its kind, its period and the generation it started.
+     */
+    public static final class Cycle {
+        private final Kind kind;
+        private final int period;
+        private final long start;
+        
+        private Cycle(Kind kind, int period, long start){
+            this.kind = kind;
+            this.period = period;
+            this.start = start;
+        }
+        
+        /**
+         * Returns whether the board died, settled or oscillates.
+         * 
+         * @return the kind of cycle
+         */
+        public Kind getKind(){
+            return kind;
+        }
+        
+        /**
+         * Returns the number of generations before the board repeats, one
+         * for extinction and still lifes.
+         * 
+         * @return the period of the cycle
+         */
+        public int getPeriod(){
+            return period;
+        }
+        
+        /**
+         * Returns the first generation of the cycle, which every later
+         * generation repeats a period apart.
+         * 
+         * @return the generation the cycle started
+         */
+        public long getStart(){
+            return start;
+        }
+        
+        @Override
+        public String toString(){
+            switch (kind){
+                case EXTINCTION:
+                    return "extinction at generation " + start;
+                case STILL_LIFE:
+                    return "still life from generation " + start;
+                default:
+                    return "period " + period + " oscillator from generation "
+                            + start;
+            }
+        }
+    }
+    
+    private final int maxPeriod;
+    // Hashes of the last maxPeriod generations, by generation modulo
+    // maxPeriod
+    private final long[] history;
+    private long generations;
+    private long last;
+    // Open addressing index of the generation each hash in history was last
+    // seen, -1 marking a free slot
+    private final long[] keys;
+    private final long[] seen;
+    private final int mask;
+    private Cycle cycle;
+    
+    /**
+     * Create a detector for cycles of up to maxPeriod generations.
+     * 
+     * @param maxPeriod longest period to detect
+     * @exception IllegalArgumentException if maxPeriod is not positive
+     */
+    public CycleDetector(int maxPeriod) throws IllegalArgumentException{
+        if (maxPeriod < 1 || maxPeriod > 1 << 28)
+            throw new IllegalArgumentException(
+                    "Period must be from 1 to 2^28.");
+        this.maxPeriod = maxPeriod;
+        history = new long[maxPeriod];
+        int capacity = Integer.highestOneBit(maxPeriod) << 2;
+        keys = new long[capacity];
+        seen = new long[capacity];
+        mask = capacity - 1;
+        clear();
+    }
+    
+    /**
+     * Records the next generation of a board and checks it for a cycle.
+     * 
+     * @param board board that has just been advanced, or seeded
+     * @return the cycle found, or null if none has been found yet
+     */
+    public Cycle add(Board board){
+        return add(board.getGeneration(), board.getHash());
+    }
+    
+    /**
+     * Records the hash of the next generation and checks it for a cycle. Once
+     * a cycle has been found it is returned for every later generation.
+     * 
+     * @param generation    the generation hashed, one after the last added
+     * @param hash          hash of the generation's live cells
+     * @return the cycle found, or null if none has been found yet
+     * @exception IllegalArgumentException if the generation does not follow
+     *            the last one added
+     */
+    public Cycle add(long generation, long hash)
+            throws IllegalArgumentException{
+        if (generations > 0 && generation != last + 1)
+            throw new IllegalArgumentException("Expected generation "
+                    + (last + 1) + " but got " + generation + ".");
+        last = generation;
+        if (cycle != null)
+            return cycle;
+        int slot = find(hash);
+        if (seen[slot] >= 0){
+            int period = (int) (generation - seen[slot]);
+            Kind kind = period > 1 ? Kind.OSCILLATOR
+                    : hash == 0 ? Kind.EXTINCTION : Kind.STILL_LIFE;
+            cycle = new Cycle(kind, period, seen[slot]);
+            return cycle;
+        }
+        if (generations >= maxPeriod)
+            forget(history[(int) (generations % maxPeriod)],
+                    generation - maxPeriod);
+        history[(int) (generations % maxPeriod)] = hash;
+        slot = find(hash);
+        keys[slot] = hash;
+        seen[slot] = generation;
+        generations++;
+        return null;
+    }
+    
+    /**
+     * Returns the cycle found, if any.
+     * 
+     * @return the cycle found, or null if none has been found yet
+     */
+    public Cycle getCycle(){
+        return cycle;
+    }
+    
+    /**
+     * Forgets every generation added, ready to watch another board.
+     */
+    public void clear(){
+        Arrays.fill(seen, -1L);
+        generations = 0;
+        cycle = null;
+    }
+    
+    // Slot holding a hash, or the free slot it would go in.
+    private int find(long hash){
+        int i = (int) LongHashSet.mix(hash) & mask;
+        while (seen[i] >= 0 && keys[i] != hash)
+            i = (i + 1) & mask;
+        return i;
+    }
+    
+    // Remove a hash that has left the history if it was last seen at the
+    // given generation.
+    private void forget(long hash, long generation){
+        int i = find(hash);
+        if (seen[i] != generation)
+            return;
+        // Shift later entries of the probe run back so lookups still find
+        // them
+        int gap = i;
+        int j = (i + 1) & mask;
+        while (seen[j] >= 0){
+            int home = (int) LongHashSet.mix(keys[j]) & mask;
+            if (((j - home) & mask) >= ((j - gap) & mask)){
+                keys[gap] = keys[j];
+                seen[gap] = seen[j];
+                gap = j;
+            }
+            j = (j + 1) & mask;
+        }
+        seen[gap] = -1;
+    }
+}
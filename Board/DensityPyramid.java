@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import java.util.Arrays;
+
+/**
+ * Counts of live cells in square blocks of a board at every power of two
+ * block size, so a zoomed out view can shade each pixel from one count
+ * whatever the size of the board.
+ * 
+ * The smallest stored blocks are the board's own tiles, 64 by 64 cells,
+ * each level above holding blocks twice the width of the one below until a
+ * single block covers the board. Snapshots carry the live cells of every
+ * tile from the board's population index, so moving to a new snapshot
+ * compares one count per tile and adds the change in each changed tile to
+ * the blocks holding it on every level; no copy of the cells is kept.
+ * Blocks narrower than a tile are counted from the last snapshot when asked
+ * for, which must therefore not be changed until the next update.
+ * 
+ * @author Dennis Windsor
+ */
+public class DensityPyramid {
+    // Width in cells of the smallest stored blocks is 1 << BASE_SHIFT
+    private static final int BASE_SHIFT = Board.TILE_SHIFT;
+    
+    private final int size;
+    // Blocks per side on each level, and the counts of each level's blocks
+    // in row order. Level 0 is laid out as the board's tile counts.
+    private final int[] sides;
+    private final long[][] counts;
+    // Last snapshot counted, or null if none has been
+    private BoardSnapshot last;
+    private long generation = -1;
+    
+    /**
+     * Create an empty pyramid for boards of the given size.
+     * 
+     * @param size  length of one row of the board
+     * @exception IllegalArgumentException if size is negative
+     */
+    public DensityPyramid(int size) throws IllegalArgumentException{
+        if (size < 0)
+            throw new IllegalArgumentException("Board size must not be "
+                    + "negative.");
+        this.size = size;
+        int base = (size + (1 << BASE_SHIFT) - 1) >>> BASE_SHIFT;
+        int levels = 1;
+        int side = base;
+        while (side > 1){
+            side = (side + 1) >>> 1;
+            levels++;
+        }
+        sides = new int[levels];
+        counts = new long[levels][];
+        side = base;
+        int level;
+        for (level = 0; level < levels; level++){
+            sides[level] = side;
+            counts[level] = new long[(int) ((long) side * side)];
+            side = (side + 1) >>> 1;
+        }
+    }
+    
+    /**
+     * Brings the counts up to date with a snapshot of a board of the same
+     * size. Only tiles whose population differs from the last snapshot are
+     * counted again.
+     * 
+     * @param snapshot  snapshot to count
+     * @exception IllegalArgumentException if the snapshot is of a board of
+     *                                     a different size
+     */
+    public void update(BoardSnapshot snapshot) throws IllegalArgumentException{
+        if (!snapshot.fits(size))
+            throw new IllegalArgumentException("Snapshot differs in size.");
+        int[] tiles = snapshot.tileCounts();
+        long[] base = counts[0];
+        int side = sides[0];
+        int t, level;
+        for (t = 0; t < tiles.length; t++){
+            long delta = tiles[t] - base[t];
+            if (delta == 0)
+                continue;
+            int x = t / side;
+            int y = t % side;
+            for (level = 0; level < counts.length; level++)
+                counts[level][(x >>> level) * sides[level] + (y >>> level)]
+                        += delta;
+        }
+        last = snapshot;
+        generation = snapshot.getGeneration();
+    }
+    
+    /**
+     * Empties the pyramid, as if every cell were dead.
+     */
+    public void clear(){
+        for (long[] level : counts)
+            Arrays.fill(level, 0);
+        last = null;
+        generation = -1;
+    }
+    
+    /**
+     * Returns the number of live cells in a square block 1 &lt;&lt; shift cells
+     * wide. Block (x, y) covers rows x &lt;&lt; shift onwards and columns
+     * y &lt;&lt; shift onwards; blocks at the edge of the board only count the
+     * cells on it.
+     * 
+     * @param shift log base two of the width of the block, from zero to
+     *              getMaxShift()
+     * @param x     row of the block
+     * @param y     column of the block
+     * @return number of live cells in the block
+     * @exception IllegalArgumentException if shift is out of range
+     * @exception ArrayIndexOutOfBoundsException if the block is not on the
+     *                                           board
+     */
+    public long getCount(int shift, int x, int y)
+            throws IllegalArgumentException, ArrayIndexOutOfBoundsException{
+        if (shift < 0 || shift > getMaxShift())
+            throw new IllegalArgumentException("Invalid block shift: "
+                    + shift);
+        int side = getSide(shift);
+        if (x < 0 || y < 0 || x >= side || y >= side)
+            throw new ArrayIndexOutOfBoundsException("Block (" + x + ", " + y
+                    + ") is outside the board at shift " + shift + ".");
+        if (shift >= BASE_SHIFT){
+            int level = shift - BASE_SHIFT;
+            return counts[level][x * sides[level] + y];
+        }
+        if (last == null)
+            return 0;
+        // Blocks narrower than a tile never cross a long
+        long[] cells = last.cells();
+        int width = 1 << shift;
+        int column = y << shift;
+        long mask = ((1L << width) - 1) << (column & 63);
+        int end = Math.min(size, (x + 1) << shift);
+        int count = 0;
+        int i;
+        for (i = x << shift; i < end; i++)
+            count += Long.bitCount(cells[last.rowOffset(i) + (column >>> 6)]
+                    & mask);
+        return count;
+    }
+    
+    /**
+     * Returns the number of blocks 1 &lt;&lt; shift cells wide along one side
+     * of the board.
+     * 
+     * @param shift log base two of the width of a block
+     * @return blocks per side of the board
+     */
+    public int getSide(int shift){
+        return (int) (((long) size + (1L << shift) - 1) >>> shift);
+    }
+    
+    /**
+     * Returns the largest block shift stored, at which one block covers the
+     * whole board.
+     * 
+     * @return log base two of the width of the largest block
+     */
+    public int getMaxShift(){
+        return BASE_SHIFT + counts.length - 1;
+    }
+    
+    /**
+     * Returns the number of live cells on the board.
+     * 
+     * @return population of the last snapshot counted
+     */
+    public long getPopulation(){
+        long[] top = counts[counts.length - 1];
+        return top.length == 0 ? 0 : top[0];
+    }
+    
+    /**
+     * Returns the generation of the last snapshot counted.
+     * 
+     * @return generation of the counts, or -1 if none has been counted
+     */
+    public long getGeneration(){
+        return generation;
+    }
+    
+    public int getSize(){
+        return size;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import java.util.Arrays;
+
+/**
+ * Fills the ghost cells around a packed board so the generation step sees the
+ * neighbours a boundary mode gives to cells on the edge. Uses the same layout
+ * as BitRows: each row is a ghost word, the row's words and another ghost
+ * word, with a ghost row above and below the board. The column before the
+ * first is bit 63 of a row's first ghost word, and the column after the last
+ * is the first unused bit of the last word, or bit 0 of the last ghost word
+ * when the row fills its words exactly.
+ *
+ * @author Dennis Windsor
+ */
+final class Edges {
+
+    private Edges(){
+    }
+
+    /**
+     * Fills every ghost cell of a board from the cells the boundary maps it
+     * to. Does nothing for a dead boundary, whose ghost cells are always
+     * empty.
+     *
+     * @param cells     packed cells, including ghost rows and words
+     * @param size      length of one row of the board
+     * @param words     number of non-ghost words in a row
+     * @param stride    number of words per row, including ghost words
+     * @param lastMask  mask of the columns in use in the last word of a row
+     * @param boundary  boundary mode to fill the ghost cells for
+     */
+    static void fill(long[] cells, int size, int words, int stride,
+            long lastMask, Boundary boundary){
+        if (boundary == Boundary.DEAD || size == 0)
+            return;
+        int i;
+        int top = stride;
+        int bottom = size * stride;
+        int after = (size + 1) * stride;
+        for (i = 1; i <= size; i++)
+            fillColumns(cells, i * stride, size, words, boundary);
+        switch (boundary){
+            case TORUS:
+                System.arraycopy(cells, bottom, cells, 0, stride);
+                System.arraycopy(cells, top, cells, after, stride);
+                break;
+            case KLEIN:
+                reverse(cells, bottom, 0, size, words, lastMask);
+                reverse(cells, top, after, size, words, lastMask);
+                fillColumns(cells, 0, size, words, Boundary.TORUS);
+                fillColumns(cells, after, size, words, Boundary.TORUS);
+                break;
+            case MIRROR:
+                System.arraycopy(cells, top, cells, 0, stride);
+                System.arraycopy(cells, bottom, cells, after, stride);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Empties every ghost cell filled by fill(), including the unused columns
+     * of the last word of each row.
+     *
+     * @param cells     packed cells, including ghost rows and words
+     * @param size      length of one row of the board
+     * @param words     number of non-ghost words in a row
+     * @param stride    number of words per row, including ghost words
+     * @param lastMask  mask of the columns in use in the last word of a row
+     */
+    static void clear(long[] cells, int size, int words, int stride,
+            long lastMask){
+        int i;
+        Arrays.fill(cells, 0, stride, 0L);
+        Arrays.fill(cells, (size + 1) * stride, (size + 2) * stride, 0L);
+        for (i = 1; i <= size; i++){
+            int row = i * stride;
+            cells[row] = 0;
+            cells[row + words] &= lastMask;
+            cells[row + words + 1] = 0;
+        }
+    }
+
+    // Fill the ghost columns either side of the row whose ghost word is at
+    // offset row, reflecting for a mirror boundary and wrapping otherwise.
+    static void fillColumns(long[] cells, int row, int size, int words,
+            Boundary boundary){
+        long first = cells[row + 1] & 1L;
+        long last = cells[row + ((size - 1) >>> 6) + 1] >>> (size - 1) & 1L;
+        long west = boundary == Boundary.MIRROR ? first : last;
+        long east = boundary == Boundary.MIRROR ? last : first;
+        cells[row] = west << 63;
+        if ((size & 63) == 0)
+            cells[row + words + 1] = east;
+        else {
+            cells[row + words] &= ~(1L << size);
+            cells[row + words] |= east << size;
+        }
+    }
+
+    // Write the columns of one row in reverse order into another row.
+    // Reversing all of a row's words leaves the unused columns at the start,
+    // so the reversed words are shifted down past them.
+    static void reverse(long[] cells, int from, int to, int size,
+            int words, long lastMask){
+        int pad = (words << 6) - size;
+        int w;
+        for (w = 0; w < words; w++){
+            long low = Long.reverse(cells[from + words - w]);
+            long high = w + 1 < words ? Long.reverse(cells[from + words - w - 1])
+                    : 0;
+            cells[to + w + 1] = pad == 0 ? low
+                    : low >>> pad | high << (64 - pad);
+        }
+        cells[to + words] &= lastMask;
+    }
+}
@@ -0,0 +1,557 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+/**
+ * Game of Life engine using Gosper's HashLife algorithm. The universe is a
+ * quadtree whose nodes are canonicalised, so identical regions are stored
+ * once, and each node remembers its own future, so repeated regions are only
+ * ever computed once. This lets stable or periodic patterns be advanced by
+ * 2^k generations in a single call.
+ *
+ * The universe is unbounded. The board's size only sets the window of cells
+ * that can be seeded and that getBoardState() returns, so results match
+ * Board for as long as a pattern keeps clear of Board's edges.
+ *
+ * @author Dennis Windsor
+ */
+public class HashLife {
+    // Default number of nodes kept before unreachable nodes are evicted
+    private static final int DEFAULT_MAX_NODES = 1 << 22;
+
+    // A square of 2^level by 2^level cells. Level 0 nodes are single cells.
+    private static final class Node {
+        final int level;
+        final Node nw, ne, sw, se;
+        final long population;
+        final int hash;
+        // Next node in the same bucket of the node table
+        Node next;
+        // Centre of this node advanced 2^resultStep generations
+        Node result;
+        int resultStep = -1;
+        boolean marked;
+
+        Node(int level, Node nw, Node ne, Node sw, Node se, long population,
+                int hash){
+            this.level = level;
+            this.nw = nw;
+            this.ne = ne;
+            this.sw = sw;
+            this.se = se;
+            this.population = population;
+            this.hash = hash;
+        }
+    }
+
+    private static final Node DEAD = new Node(0, null, null, null, null, 0, 0);
+    private static final Node ALIVE = new Node(0, null, null, null, null, 1, 1);
+
+    private final int size;
+    private final int maxNodes;
+    // Canonical node table, chained through Node.next
+    private Node[] table;
+    private int nodes;
+    // Canonical empty node of each level
+    private Node[] empty;
+    // Root of the universe, centred on cell (0, 0)
+    private Node root;
+    private long generation;
+    private Rule rule = Rule.LIFE;
+
+    /**
+     * Create a new HashLife universe whose visible window is size by size
+     * large. All cells are initially empty.
+     *
+     * @param size length of one row of the visible window
+     * @exception IllegalArgumentException if size is negative
+     */
+    public HashLife(int size) throws IllegalArgumentException{
+        this(size, DEFAULT_MAX_NODES);
+    }
+
+    /**
+     * Create a new HashLife universe whose visible window is size by size
+     * large, evicting unreachable nodes once more than maxNodes nodes exist.
+     * Cached results of the nodes kept are kept too, unless they alone
+     * exceed the limit. The limit is checked between steps, so a single very
+     * long step may exceed it until it completes.
+     *
+     * @param size      length of one row of the visible window
+     * @param maxNodes  number of nodes to keep before evicting
+     * @exception IllegalArgumentException if size is negative or maxNodes is
+     *            not positive
+     */
+    public HashLife(int size, int maxNodes) throws IllegalArgumentException{
+        if (size < 0)
+            throw new IllegalArgumentException("Size must be positive.");
+        if (maxNodes < 1)
+            throw new IllegalArgumentException("Node limit must be positive.");
+        this.size = size;
+        this.maxNodes = maxNodes;
+        table = new Node[1024];
+        empty = new Node[64];
+        empty[0] = DEAD;
+        int level = 3;
+        while ((1L << (level - 1)) < size)
+            level++;
+        root = empty(level);
+    }
+
+    /**
+     * Sets the rule used to compute each following generation. Rules in which
+     * cells with no live neighbours are born would fill the unbounded
+     * universe, so are not supported.
+     *
+     * @param rule  the new rule
+     * @exception IllegalArgumentException if rule is null or contains B0
+     */
+    public void setRule(Rule rule) throws IllegalArgumentException{
+        if (rule == null)
+            throw new IllegalArgumentException("Rule must not be null.");
+        if (rule.isBirth(0))
+            throw new IllegalArgumentException(
+                    "Rules with B0 need a bounded board.");
+        this.rule = rule;
+        // Cached results were computed under the old rule
+        for (Node head : table)
+            for (; head != null; head = head.next){
+                head.result = null;
+                head.resultStep = -1;
+            }
+    }
+
+    /**
+     * Returns the rule used to compute each generation.
+     *
+     * @return the universe's rule
+     */
+    public Rule getRule(){
+        return rule;
+    }
+
+    /**
+     * Advances the universe by one generation.
+     */
+    public void update(){
+        step(0);
+    }
+
+    /**
+     * Advances the universe by 2^k generations in one step.
+     *
+     * @param k base 2 logarithm of the number of generations to advance
+     * @exception IllegalArgumentException if k is negative or too large
+     */
+    public void step(int k) throws IllegalArgumentException{
+        if (k < 0 || k > 60)
+            throw new IllegalArgumentException("Step must be from 0 to 60.");
+        if (nodes > maxNodes)
+            evict();
+        // Pad until every live cell lies in the central quarter, which is as
+        // far as cells can spread in the 2^k generations computed.
+        while (root.level < k + 2 || !inCentre(root))
+            root = expand(root);
+        root = expand(root);
+        root = successor(root, k);
+        generation += 1L << k;
+        while (root.level > 3 && inCentre(root))
+            root = centre(root);
+    }
+
+    /**
+     * Advances the universe by the given number of generations, using the
+     * fewest power of two steps.
+     *
+     * @param generations number of generations to advance
+     * @exception IllegalArgumentException if generations is negative
+     */
+    public void advance(long generations) throws IllegalArgumentException{
+        if (generations < 0)
+            throw new IllegalArgumentException(
+                    "Generations must not be negative.");
+        int k;
+        for (k = 0; generations != 0; k++, generations >>>= 1)
+            if ((generations & 1) != 0)
+                step(k);
+    }
+
+    /**
+     * Returns the number of generations the universe has been advanced.
+     *
+     * @return the current generation
+     */
+    public long getGeneration(){
+        return generation;
+    }
+
+    /**
+     * Returns the number of live cells in the whole universe, including any
+     * outside the visible window.
+     *
+     * @return the number of live cells
+     */
+    public long getPopulation(){
+        return root.population;
+    }
+
+    /**
+     * Returns the number of quadtree nodes currently held.
+     *
+     * @return the number of canonical nodes
+     */
+    public int getNodeCount(){
+        return nodes;
+    }
+
+    /**
+     * Returns an array of Strings of the names of all the shapes that can be
+     * added to the board.
+     *
+     * @return  An array of Strings containing the name of shapes that can be
+     *          added to the board.
+     */
+    public String[] getShapes(){
+        return Shapes.names();
+    }
+
+    /**
+     * Returns the current state of the visible window.
+     *
+     * @return a 2-d boolean array representing the current board state
+     */
+    public boolean[][] getBoardState(){
+        boolean[][] state = new boolean[size][size];
+        long half = 1L << (root.level - 1);
+        fill(root, -half, -half, state);
+        return state;
+    }
+
+    /**
+     * Returns whether the cell at row x, column y is alive.
+     *
+     * @param x Row of cell
+     * @param y Column of cell
+     * @return true if the cell is alive
+     */
+    public boolean isAlive(int x, int y){
+        checkCell(x, y);
+        Node node = root;
+        long half = 1L << (root.level - 1);
+        long row = x + half;
+        long col = y + half;
+        // Cells outside the root are dead
+        if (row >= 2 * half || col >= 2 * half)
+            return false;
+        while (node.level > 0 && node.population > 0){
+            half = 1L << (node.level - 1);
+            if (row < half)
+                node = col < half ? node.nw : node.ne;
+            else
+                node = col < half ? node.sw : node.se;
+            row &= half - 1;
+            col &= half - 1;
+        }
+        return node.population > 0;
+    }
+
+    /**
+     * Changes the state of a single cell at row x, column y on the board.
+     *
+     * @param x Row of cell to be changed
+     * @param y Column of cell to be changed
+     */
+    public void flipCell(int x, int y){
+        setCell(x, y, !isAlive(x, y));
+    }
+
+    /**
+     * Add a given shape to the board.
+     *
+     * @param shape String representation of shape to be added, or the path
+     *              of an RLE, Life 1.06 or plaintext pattern file
+     * @param x     row of upper right corner where shape should be added
+     * @param y     column of upper right corner where shape should be added
+     * @exception IllegalArgumentException if the shape is not known or its
+     *            pattern file cannot be read
+     */
+    public void addShape(String shape, int x, int y)
+            throws IllegalArgumentException{
+        int[] currShape = Shapes.get(shape);
+        int i;
+        for (i = 0; i < currShape.length/2; i++)
+            checkCell(x + currShape[2*i], y + currShape[2*i+1]);
+        for (i = 0; i < currShape.length/2; i++)
+            setCell(x + currShape[2*i], y + currShape[2*i+1], true);
+    }
+
+    public int getSize(){
+        return this.size;
+    }
+
+    // Check a cell lies in the visible window.
+    private void checkCell(int x, int y){
+        if (x < 0 || y < 0 || x >= size || y >= size)
+            throw new ArrayIndexOutOfBoundsException("Cell (" + x + ", " + y
+                    + ") is outside a board of size " + size + ".");
+    }
+
+    // Set a cell, growing the root until it covers the cell.
+    private void setCell(int x, int y, boolean alive){
+        checkCell(x, y);
+        while ((1L << (root.level - 1)) <= Math.max(x, y))
+            root = expand(root);
+        long half = 1L << (root.level - 1);
+        root = setCell(root, x + half, y + half, alive);
+    }
+
+    // Return node with the cell at row, column relative to its corner set.
+    private Node setCell(Node node, long row, long col, boolean alive){
+        if (node.level == 0)
+            return alive ? ALIVE : DEAD;
+        long half = 1L << (node.level - 1);
+        Node nw = node.nw, ne = node.ne, sw = node.sw, se = node.se;
+        long r = row & (half - 1);
+        long c = col & (half - 1);
+        if (row < half){
+            if (col < half)
+                nw = setCell(nw, r, c, alive);
+            else
+                ne = setCell(ne, r, c, alive);
+        }
+        else {
+            if (col < half)
+                sw = setCell(sw, r, c, alive);
+            else
+                se = setCell(se, r, c, alive);
+        }
+        return join(nw, ne, sw, se);
+    }
+
+    // Copy the live cells of node, whose corner is at row, col, into state.
+    private void fill(Node node, long row, long col, boolean[][] state){
+        long side = 1L << node.level;
+        if (node.population == 0 || row >= size || col >= size
+                || row + side <= 0 || col + side <= 0)
+            return;
+        if (node.level == 0){
+            state[(int) row][(int) col] = true;
+            return;
+        }
+        long half = side >>> 1;
+        fill(node.nw, row, col, state);
+        fill(node.ne, row, col + half, state);
+        fill(node.sw, row + half, col, state);
+        fill(node.se, row + half, col + half, state);
+    }
+
+    // Return the canonical node with the given quadrants.
+    private Node join(Node nw, Node ne, Node sw, Node se){
+        int hash = hash(nw, ne, sw, se);
+        int index = hash & (table.length - 1);
+        Node node;
+        for (node = table[index]; node != null; node = node.next)
+            if (node.nw == nw && node.ne == ne && node.sw == sw
+                    && node.se == se)
+                return node;
+        node = new Node(nw.level + 1, nw, ne, sw, se, nw.population
+                + ne.population + sw.population + se.population, hash);
+        insert(node);
+        return node;
+    }
+
+    private static int hash(Node nw, Node ne, Node sw, Node se){
+        int h = nw.hash;
+        h = h * 31 + ne.hash;
+        h = h * 31 + sw.hash;
+        h = h * 31 + se.hash;
+        return h ^ (h >>> 16);
+    }
+
+    // Add a node to the table, growing the table when it gets too full.
+    private void insert(Node node){
+        if (++nodes > table.length - (table.length >>> 2)){
+            Node[] old = table;
+            table = new Node[old.length * 2];
+            for (Node head : old){
+                while (head != null){
+                    Node next = head.next;
+                    int index = head.hash & (table.length - 1);
+                    head.next = table[index];
+                    table[index] = head;
+                    head = next;
+                }
+            }
+        }
+        int index = node.hash & (table.length - 1);
+        node.next = table[index];
+        table[index] = node;
+    }
+
+    // Return the canonical empty node of a level.
+    private Node empty(int level){
+        if (empty[level] == null){
+            Node e = empty(level - 1);
+            empty[level] = join(e, e, e, e);
+        }
+        return empty[level];
+    }
+
+    // Return a node one level up with node at its centre.
+    private Node expand(Node node){
+        Node e = empty(node.level - 1);
+        return join(join(e, e, e, node.nw), join(e, e, node.ne, e),
+                join(e, node.sw, e, e), join(node.se, e, e, e));
+    }
+
+    // Return the central half of a node.
+    private Node centre(Node node){
+        return join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+    }
+
+    // Check every live cell of node lies in its central half.
+    private static boolean inCentre(Node node){
+        return node.population == node.nw.se.population
+                + node.ne.sw.population + node.sw.ne.population
+                + node.se.nw.population;
+    }
+
+    // Return the centre of node advanced 2^k generations, where k is at most
+    // node.level - 2. Results are cached on the node for the last k used.
+    private Node successor(Node node, int k){
+        if (node.population == 0)
+            return empty(node.level - 1);
+        if (node.level == 2)
+            return life4x4(node);
+        k = Math.min(k, node.level - 2);
+        if (node.resultStep == k)
+            return node.result;
+        Node nw = node.nw, ne = node.ne, sw = node.sw, se = node.se;
+        // Nine overlapping sub-squares, each advanced 2^k generations
+        Node c1 = successor(nw, k);
+        Node c2 = successor(join(nw.ne, ne.nw, nw.se, ne.sw), k);
+        Node c3 = successor(ne, k);
+        Node c4 = successor(join(nw.sw, nw.se, sw.nw, sw.ne), k);
+        Node c5 = successor(join(nw.se, ne.sw, sw.ne, se.nw), k);
+        Node c6 = successor(join(ne.sw, ne.se, se.nw, se.ne), k);
+        Node c7 = successor(sw, k);
+        Node c8 = successor(join(sw.ne, se.nw, sw.se, se.sw), k);
+        Node c9 = successor(se, k);
+        Node result;
+        if (k < node.level - 2){
+            // The nine squares already hold the full step; take their
+            // centres.
+            result = join(join(c1.se, c2.sw, c4.ne, c5.nw),
+                    join(c2.se, c3.sw, c5.ne, c6.nw),
+                    join(c4.se, c5.sw, c7.ne, c8.nw),
+                    join(c5.se, c6.sw, c8.ne, c9.nw));
+        }
+        else {
+            // Advance a second 2^(level - 3) generations on the four
+            // overlapping squares built from them.
+            result = join(successor(join(c1, c2, c4, c5), k - 1),
+                    successor(join(c2, c3, c5, c6), k - 1),
+                    successor(join(c4, c5, c7, c8), k - 1),
+                    successor(join(c5, c6, c8, c9), k - 1));
+        }
+        node.result = result;
+        node.resultStep = k;
+        return result;
+    }
+
+    // Advance the central 2x2 cells of a 4x4 node by one generation.
+    private Node life4x4(Node node){
+        if (node.resultStep == 0)
+            return node.result;
+        int bits = 0;
+        int r, c;
+        for (r = 0; r < 4; r++)
+            for (c = 0; c < 4; c++)
+                if (cell(node, r, c))
+                    bits |= 1 << (r * 4 + c);
+        Node result = join(life(bits, 1, 1), life(bits, 1, 2),
+                life(bits, 2, 1), life(bits, 2, 2));
+        node.result = result;
+        node.resultStep = 0;
+        return result;
+    }
+
+    // Read a cell of a 4x4 node.
+    private static boolean cell(Node node, int row, int col){
+        Node quad = row < 2 ? (col < 2 ? node.nw : node.ne)
+                : (col < 2 ? node.sw : node.se);
+        Node leaf = (row & 1) == 0 ? ((col & 1) == 0 ? quad.nw : quad.ne)
+                : ((col & 1) == 0 ? quad.sw : quad.se);
+        return leaf.population > 0;
+    }
+
+    // Next state of the cell at row, col of a 4x4 grid packed into bits.
+    private Node life(int bits, int row, int col){
+        int shift = (row - 1) * 4 + col - 1;
+        int neighbourhood = (bits >>> shift & 7) | (bits >>> shift + 4 & 7) << 3
+                | (bits >>> shift + 8 & 7) << 6;
+        return rule.next(neighbourhood) ? ALIVE : DEAD;
+    }
+
+    // Drop every node not reachable from the root or from a kept node's
+    // cached result, so results computed before the eviction are reused
+    // after it. If the results alone hold more than the limit they are
+    // dropped as well.
+    private void evict(){
+        collect(true);
+        if (nodes > maxNodes)
+            collect(false);
+    }
+
+    // Rebuild the table from the nodes reachable from the root and the empty
+    // nodes, following cached results too if they are kept.
+    private void collect(boolean keepResults){
+        mark(root, keepResults);
+        for (Node e : empty)
+            if (e != null)
+                mark(e, keepResults);
+        Node[] old = table;
+        table = new Node[old.length];
+        nodes = 0;
+        for (Node head : old){
+            while (head != null){
+                Node next = head.next;
+                if (head.marked){
+                    head.marked = false;
+                    if (!keepResults){
+                        head.result = null;
+                        head.resultStep = -1;
+                    }
+                    insert(head);
+                }
+                head = next;
+            }
+        }
+    }
+
+    private static void mark(Node node, boolean keepResults){
+        if (node.level == 0 || node.marked)
+            return;
+        node.marked = true;
+        mark(node.nw, keepResults);
+        mark(node.ne, keepResults);
+        mark(node.sw, keepResults);
+        mark(node.se, keepResults);
+        if (keepResults && node.result != null)
+            mark(node.result, keepResults);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of non-negative long values, such as durations in nanoseconds,
+ * with log-linear buckets in the style of HdrHistogram. Values below 128 are
+ * counted exactly; above that each power of two is split into 64 buckets, so
+ * any value is known to within about 1.6% whatever its size. Recording is
+ * lock-free, takes constant time and never allocates, so values can be
+ * recorded on one thread while another reads them.
+ * 
+ * @author Dennis Windsor
+ */
+public class Histogram {
+    // Values are bucketed by their top SUB_BITS bits
+    private static final int SUB_BITS = 7;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int HALF_COUNT = SUB_COUNT >>> 1;
+    private static final int BUCKETS = (64 - SUB_BITS) * HALF_COUNT
+            + SUB_COUNT;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+    
+    /**
+     * Records one value.
+     * 
+     * @param value value to be recorded, negative values counting as zero
+     */
+    public void record(long value){
+        if (value < 0)
+            value = 0;
+        counts.incrementAndGet(bucket(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+        long seen = max.get();
+        while (value > seen && !max.compareAndSet(seen, value))
+            seen = max.get();
+    }
+    
+    /**
+     * Returns the number of values recorded.
+     * 
+     * @return number of values recorded
+     */
+    public long getCount(){
+        return count.get();
+    }
+    
+    /**
+     * Returns the exact mean of the values recorded.
+     * 
+     * @return the mean, or zero if no values have been recorded
+     */
+    public double getMean(){
+        long n = count.get();
+        return n == 0 ? 0 : (double) total.get() / n;
+    }
+    
+    /**
+     * Returns the exact largest value recorded.
+     * 
+     * @return the largest value, or zero if no values have been recorded
+     */
+    public long getMax(){
+        return max.get();
+    }
+    
+    /**
+     * Returns a value that the given percentage of recorded values are at or
+     * below, rounded up to the top of its bucket.
+     * 
+     * @param percentile    percentage of values, from 0 to 100
+     * @return the value at the percentile, or zero if no values have been
+     *         recorded
+     * @exception IllegalArgumentException if percentile is out of range
+     */
+    public long getValueAtPercentile(double percentile)
+            throws IllegalArgumentException{
+        if (!(percentile >= 0 && percentile <= 100))
+            throw new IllegalArgumentException(
+                    "Percentile must be from 0 to 100.");
+        long n = count.get();
+        if (n == 0)
+            return 0;
+        long wanted = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        int i;
+        for (i = 0; i < BUCKETS; i++){
+            seen += counts.get(i);
+            if (seen >= wanted)
+                return Math.min(highest(i), max.get());
+        }
+        return max.get();
+    }
+    
+    /**
+     * Forgets every value recorded. Values recorded at the same time may be
+     * partly forgotten.
+     */
+    public void reset(){
+        int i;
+        for (i = 0; i < BUCKETS; i++)
+            counts.set(i, 0);
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+    
+    // Bucket a value falls in. The shift drops all but the top SUB_BITS
+    // bits, leaving a sub-bucket in the upper half of the range for every
+    // shift but the first.
+    private static int bucket(long value){
+        int magnitude = 63 - Long.numberOfLeadingZeros(value | SUB_COUNT - 1);
+        int shift = magnitude - (SUB_BITS - 1);
+        return shift * HALF_COUNT + (int) (value >>> shift);
+    }
+    
+    // Largest value that falls in a bucket.
+    private static long highest(int bucket){
+        int shift = Math.max(0, bucket / HALF_COUNT - 1);
+        long sub = bucket - shift * HALF_COUNT;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Recent generations of a board, kept compactly so any of them can be
+ * returned to.
+ * 
+ * Generations are recorded as snapshots and stored in segments. Each segment
+ * starts with a keyframe holding the whole board; every later frame holds
+ * only the XOR of its cells with the frame before, so cells that did not
+ * change cost nothing. Both are stored as runs of empty longs and literal
+ * longs. Seeking decodes the keyframe and applies at most KEYFRAME_INTERVAL
+ * deltas, so its cost does not depend on how long the history is. When the
+ * stored frames take more than the memory budget, the oldest segments are
+ * dropped, though the newest is always kept.
+ * 
+ * Recording a generation no later than the newest one stored, as happens
+ * when a board is rewound and run again, first drops every frame from that
+ * generation on.
+ * 
+ * @author Dennis Windsor
+ */
+public class History {
+    // Frames in a segment, including its keyframe
+    private static final int KEYFRAME_INTERVAL = 32;
+    // Estimated bytes used by a frame besides its data
+    private static final long FRAME_OVERHEAD = 32;
+    
+    private final int size;
+    private final int words;
+    private final int stride;
+    private final long budget;
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    // Cells of the newest frame, which the next delta is taken against, or
+    // null if the next frame must be a keyframe
+    private long[] last;
+    // Buffer frames are encoded into before being copied to their own array
+    private long[] scratch;
+    private long bytes;
+    private int frames;
+    
+    // A keyframe and the deltas that follow it.
+    private static final class Segment {
+        final long[] generations = new long[KEYFRAME_INTERVAL];
+        final long[][] data = new long[KEYFRAME_INTERVAL][];
+        int count;
+        long bytes;
+    }
+    
+    /**
+     * Create an empty history for boards of the given size.
+     * 
+     * @param size      length of one row of the board
+     * @param budget    bytes the stored frames may take before the oldest
+     *                  are dropped
+     * @exception IllegalArgumentException if size or budget is negative
+     */
+    public History(int size, long budget) throws IllegalArgumentException{
+        if (size < 0)
+            throw new IllegalArgumentException("Size must be positive.");
+        if (budget < 0)
+            throw new IllegalArgumentException(
+                    "Budget must not be negative.");
+        this.size = size;
+        this.words = (size + 63) >>> 6;
+        this.stride = words + 2;
+        this.budget = budget;
+    }
+    
+    /**
+     * Adds a generation to the history as its newest frame.
+     * 
+     * @param snapshot  snapshot of the generation
+     * @exception IllegalArgumentException if the snapshot is of a board of a
+     *                                     different size
+     */
+    public void record(BoardSnapshot snapshot) throws IllegalArgumentException{
+        checkSize(snapshot);
+        long generation = snapshot.getGeneration();
+        truncate(generation);
+        long[] cells = snapshot.cells();
+        Segment segment = segments.peekLast();
+        boolean key = last == null || segment == null
+                || segment.count == KEYFRAME_INTERVAL;
+        if (key){
+            segment = new Segment();
+            segments.addLast(segment);
+        }
+        long[] data = encode(cells, key ? null : last);
+        segment.generations[segment.count] = generation;
+        segment.data[segment.count++] = data;
+        long frameBytes = data.length * 8L + FRAME_OVERHEAD;
+        segment.bytes += frameBytes;
+        bytes += frameBytes;
+        frames++;
+        if (last == null)
+            last = new long[cells.length];
+        System.arraycopy(cells, 0, last, 0, cells.length);
+        while (bytes > budget && segments.size() > 1){
+            Segment oldest = segments.pollFirst();
+            bytes -= oldest.bytes;
+            frames -= oldest.count;
+        }
+    }
+    
+    /**
+     * Rebuilds the newest stored generation no later than the one given.
+     * 
+     * @param generation    generation to return to
+     * @param reuse         snapshot to write into if it is of a board of the
+     *                      same size, or null to create a new one
+     * @return a snapshot of the stored generation, or null if every stored
+     *         generation is later than the one given
+     */
+    public BoardSnapshot seek(long generation, BoardSnapshot reuse){
+        Iterator<Segment> newestFirst = segments.descendingIterator();
+        while (newestFirst.hasNext()){
+            Segment segment = newestFirst.next();
+            if (segment.generations[0] > generation)
+                continue;
+            if (reuse == null || !reuse.fits(size))
+                reuse = new BoardSnapshot(size, words, stride);
+            long[] cells = reuse.cells();
+            Arrays.fill(cells, 0);
+            int i;
+            for (i = 0; i < segment.count
+                    && segment.generations[i] <= generation; i++)
+                apply(segment.data[i], cells);
+            reuse.setGeneration(segment.generations[i - 1]);
+            return reuse;
+        }
+        return null;
+    }
+    
+    /**
+     * Returns the first stored generation after the one given.
+     * 
+     * @param generation    generation to look after
+     * @return the next stored generation, or -1 if there is none
+     */
+    public long getNextGeneration(long generation){
+        for (Segment segment : segments){
+            if (segment.generations[segment.count - 1] <= generation)
+                continue;
+            int i;
+            for (i = 0; segment.generations[i] <= generation; i++)
+                ;
+            return segment.generations[i];
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns the oldest stored generation.
+     * 
+     * @return the oldest generation, or -1 if the history is empty
+     */
+    public long getOldestGeneration(){
+        Segment oldest = segments.peekFirst();
+        return oldest == null ? -1 : oldest.generations[0];
+    }
+    
+    /**
+     * Returns the newest stored generation.
+     * 
+     * @return the newest generation, or -1 if the history is empty
+     */
+    public long getNewestGeneration(){
+        Segment newest = segments.peekLast();
+        return newest == null ? -1 : newest.generations[newest.count - 1];
+    }
+    
+    /**
+     * Returns the number of generations stored.
+     * 
+     * @return stored frames
+     */
+    public int getFrameCount(){
+        return frames;
+    }
+    
+    /**
+     * Returns an estimate of the memory taken by the stored frames.
+     * 
+     * @return bytes used by the stored frames
+     */
+    public long getBytes(){
+        return bytes;
+    }
+    
+    public long getBudget(){
+        return budget;
+    }
+    
+    /**
+     * Drops every stored generation.
+     */
+    public void clear(){
+        segments.clear();
+        last = null;
+        bytes = 0;
+        frames = 0;
+    }
+    
+    // Drop every frame from the given generation on. The next frame is then
+    // a keyframe, as the one last was taken from may have gone.
+    private void truncate(long generation){
+        Segment segment;
+        while ((segment = segments.peekLast()) != null
+                && segment.generations[segment.count - 1] >= generation){
+            last = null;
+            long frameBytes = segment.data[--segment.count].length * 8L
+                    + FRAME_OVERHEAD;
+            segment.data[segment.count] = null;
+            segment.bytes -= frameBytes;
+            bytes -= frameBytes;
+            frames--;
+            if (segment.count == 0)
+                segments.pollLast();
+        }
+    }
+    
+    // Encode the XOR of cells with previous, or the cells themselves if
+    // previous is null, as runs. Each run is a long holding the number of
+    // empty longs in its upper half and the number of literal longs in its
+    // lower half, followed by the literals. Empty longs after the last
+    // literal are left out.
+    private long[] encode(long[] cells, long[] previous){
+        // Every run but the last has a literal, so runs can take at most
+        // half as many longs again as the cells themselves
+        int limit = cells.length + cells.length / 2 + 1;
+        if (scratch == null || scratch.length < limit)
+            scratch = new long[limit];
+        int length = 0;
+        int header = -1;
+        long empty = 0;
+        int i;
+        for (i = 0; i < cells.length; i++){
+            long word = previous == null ? cells[i] : cells[i] ^ previous[i];
+            if (word == 0){
+                empty++;
+                header = -1;
+                continue;
+            }
+            if (header < 0){
+                header = length++;
+                scratch[header] = empty << 32;
+                empty = 0;
+            }
+            scratch[header]++;
+            scratch[length++] = word;
+        }
+        return Arrays.copyOf(scratch, length);
+    }
+    
+    // XOR encoded runs into cells.
+    private static void apply(long[] data, long[] cells){
+        int i = 0;
+        int word = 0;
+        while (i < data.length){
+            long header = data[i++];
+            word += (int) (header >>> 32);
+            int literals = (int) header;
+            while (literals-- > 0)
+                cells[word++] ^= data[i++];
+        }
+    }
+    
+    private void checkSize(BoardSnapshot snapshot){
+        if (!snapshot.fits(size))
+            throw new IllegalArgumentException("Snapshot differs in size.");
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Open addressing hash set of primitive longs. Keys are stored unboxed in a
+ * single array with linear probing; zero marks a free slot so is tracked
+ * separately.
+ * 
+ * @author Dennis Windsor
+ */
+final class LongHashSet {
+    private long[] keys;
+    private int mask;
+    private int size;
+    private boolean hasZero;
+    
+    /**
+     * Create an empty set sized to hold the given number of keys without
+     * growing.
+     * 
+     * @param expected number of keys expected
+     */
+    LongHashSet(int expected){
+        int capacity = capacityFor(expected);
+        keys = new long[capacity];
+        mask = capacity - 1;
+    }
+    
+    /**
+     * Adds a key to the set.
+     * 
+     * @param key   key to add
+     * @return true if the key was not already present
+     */
+    boolean add(long key){
+        if (key == 0){
+            if (hasZero)
+                return false;
+            hasZero = true;
+            size++;
+            return true;
+        }
+        int i = slot(key);
+        while (keys[i] != 0){
+            if (keys[i] == key)
+                return false;
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        if (++size > keys.length * 3 / 4)
+            grow();
+        return true;
+    }
+    
+    /**
+     * Removes a key from the set.
+     * 
+     * @param key   key to remove
+     * @return true if the key was present
+     */
+    boolean remove(long key){
+        if (key == 0){
+            if (!hasZero)
+                return false;
+            hasZero = false;
+            size--;
+            return true;
+        }
+        int i = slot(key);
+        while (keys[i] != key){
+            if (keys[i] == 0)
+                return false;
+            i = (i + 1) & mask;
+        }
+        // Shift later keys of the probe run back so lookups still find them
+        int gap = i;
+        int j = (i + 1) & mask;
+        while (keys[j] != 0){
+            int home = slot(keys[j]);
+            if (((j - home) & mask) >= ((j - gap) & mask)){
+                keys[gap] = keys[j];
+                gap = j;
+            }
+            j = (j + 1) & mask;
+        }
+        keys[gap] = 0;
+        size--;
+        return true;
+    }
+    
+    /**
+     * Returns whether the key is in the set.
+     * 
+     * @param key   key to look for
+     * @return true if the key is present
+     */
+    boolean contains(long key){
+        if (key == 0)
+            return hasZero;
+        int i = slot(key);
+        while (keys[i] != 0){
+            if (keys[i] == key)
+                return true;
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+    
+    int size(){
+        return size;
+    }
+    
+    /**
+     * Removes every key, keeping the current capacity.
+     */
+    void clear(){
+        Arrays.fill(keys, 0);
+        hasZero = false;
+        size = 0;
+    }
+    
+    /**
+     * Removes every key, shrinking the set if it is more than four times
+     * the size needed for the given number of keys, so that clearing and
+     * iterating it costs no more than the keys it is about to hold.
+     * 
+     * @param expected number of keys expected
+     */
+    void clear(int expected){
+        int capacity = capacityFor(expected);
+        if (keys.length >= capacity * 4){
+            keys = new long[capacity];
+            mask = capacity - 1;
+            hasZero = false;
+            size = 0;
+        }
+        else
+            clear();
+    }
+    
+    /**
+     * Calls the action with every key in the set in no particular order.
+     * 
+     * @param action    action to be called for each key
+     */
+    void forEach(LongConsumer action){
+        if (hasZero)
+            action.accept(0);
+        for (long key : keys)
+            if (key != 0)
+                action.accept(key);
+    }
+    
+    // Smallest capacity holding the given number of keys without growing.
+    private static int capacityFor(int expected){
+        int capacity = 16;
+        while (capacity * 3 / 4 < expected)
+            capacity <<= 1;
+        return capacity;
+    }
+    
+    // Home slot of a key.
+    private int slot(long key){
+        return (int) mix(key) & mask;
+    }
+    
+    /**
+     * Scrambles the bits of a key so nearby keys spread across the table.
+     * 
+     * @param key   key to be mixed
+     * @return the mixed key
+     */
+    static long mix(long key){
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        return key ^ (key >>> 33);
+    }
+    
+    // Double the capacity and re-insert every key.
+    private void grow(){
+        long[] old = keys;
+        keys = new long[old.length * 2];
+        mask = keys.length - 1;
+        for (long key : old){
+            if (key != 0){
+                int i = slot(key);
+                while (keys[i] != 0)
+                    i = (i + 1) & mask;
+                keys[i] = key;
+            }
+        }
+    }
+}
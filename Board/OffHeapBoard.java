@@ -0,0 +1,392 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * A board whose cells are kept outside the Java heap, for boards too large
+ * for the heap or whose garbage collection would cost too much. Cells are
+ * packed 64 to a long as in Board, in direct buffers of at most a gigabyte
+ * of whole rows each, so the number of cells is limited only by memory and
+ * the JVM's direct memory limit (-XX:MaxDirectMemorySize), not by the size
+ * of a Java array.
+ * 
+ * Each generation is computed a row at a time: the rows around it are
+ * copied into a small window on the heap, stepped with the same kernel as
+ * Board, and the result copied out to the other generation's buffers. The
+ * board behaves as a Board of the same size and rule with a dead boundary.
+ * 
+ * The memory is freed as soon as the board is closed, rather than whenever
+ * the buffers are next collected, so boards should be used in a
+ * try-with-resources block. A closed board cannot be used again.
+ * 
+ * @author Dennis Windsor
+ */
+public class OffHeapBoard implements AutoCloseable {
+    // Largest buffer allocated, in bytes
+    private static final long CHUNK_BYTES = 1L << 30;
+    // Frees a direct buffer's memory at once, or null if this JVM offers no
+    // way to, in which case buffers are left to the garbage collector
+    private static final MethodHandle INVOKE_CLEANER = invokeCleaner();
+    
+    private final int size;
+    private final int words;
+    private final long lastMask;
+    private final int rowsPerChunk;
+    // Buffers of the current and next generation, and long views of them.
+    // Row x is in chunk x / rowsPerChunk, starting at long
+    // (x % rowsPerChunk) * words.
+    private ByteBuffer[] buffers;
+    private ByteBuffer[] nextBuffers;
+    private LongBuffer[] chunks;
+    private LongBuffer[] nextChunks;
+    // Three rows of the current generation around the row being computed,
+    // and the computed row, each with a ghost word at either end
+    private final long[] window;
+    private final long[] row;
+    private long generation;
+    private Rule rule = Rule.LIFE;
+    private boolean closed;
+    
+    /**
+     * Create a new board which is size by size large, with every cell
+     * initially empty.
+     * 
+     * @param size length of one row of the grid
+     * @exception IllegalArgumentException if size is negative
+     * @exception OutOfMemoryError if there is not enough direct memory
+     */
+    public OffHeapBoard(int size) throws IllegalArgumentException{
+        if (size < 0)
+            throw new IllegalArgumentException("Size must be positive.");
+        this.size = size;
+        words = (size + 63) >>> 6;
+        lastMask = (size & 63) == 0 ? -1L : (1L << (size & 63)) - 1;
+        rowsPerChunk = (int) Math.min(size,
+                Math.max(1, CHUNK_BYTES / Math.max(1, words * 8L)));
+        int count = rowsPerChunk == 0 ? 0
+                : (size + rowsPerChunk - 1) / rowsPerChunk;
+        buffers = new ByteBuffer[count];
+        nextBuffers = new ByteBuffer[count];
+        chunks = new LongBuffer[count];
+        nextChunks = new LongBuffer[count];
+        window = new long[3 * (words + 2)];
+        row = new long[words + 2];
+        try {
+            int c;
+            for (c = 0; c < count; c++){
+                int rows = Math.min(rowsPerChunk, size - c * rowsPerChunk);
+                buffers[c] = ByteBuffer.allocateDirect(rows * words * 8)
+                        .order(ByteOrder.nativeOrder());
+                nextBuffers[c] = ByteBuffer.allocateDirect(rows * words * 8)
+                        .order(ByteOrder.nativeOrder());
+                chunks[c] = buffers[c].asLongBuffer();
+                nextChunks[c] = nextBuffers[c].asLongBuffer();
+            }
+        } catch (OutOfMemoryError e) {
+            close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Updates the game board by advancing it one generation according to the
+     * board's rule, by default Conway's rules. Cells beyond the edge of the
+     * board are always dead.
+     * 
+     * @exception IllegalStateException if the board has been closed
+     */
+    public void update() throws IllegalStateException{
+        checkOpen();
+        int stride = words + 2;
+        int above = 0;
+        int current = stride;
+        int below = 2 * stride;
+        Arrays.fill(window, 0);
+        if (size > 0)
+            readRow(0, window, current + 1);
+        int x;
+        for (x = 0; x < size; x++){
+            if (x + 1 < size)
+                readRow(x + 1, window, below + 1);
+            else
+                Arrays.fill(window, below, below + stride, 0);
+            BitRows.step(window, above, current, below, row, 0, words,
+                    lastMask, rule);
+            nextChunks[x / rowsPerChunk].put((x % rowsPerChunk) * words, row,
+                    1, words);
+            // The old row above becomes the slot for the next row below
+            int free = above;
+            above = current;
+            current = below;
+            below = free;
+        }
+        ByteBuffer[] oldBuffers = buffers;
+        buffers = nextBuffers;
+        nextBuffers = oldBuffers;
+        LongBuffer[] oldChunks = chunks;
+        chunks = nextChunks;
+        nextChunks = oldChunks;
+        generation++;
+    }
+    
+    /**
+     * Returns the number of generations the board has been advanced.
+     * 
+     * @return the current generation
+     */
+    public long getGeneration(){
+        return generation;
+    }
+    
+    /**
+     * Sets the rule used to compute each generation.
+     * 
+     * @param rule  rule to be used by update()
+     * @exception IllegalArgumentException if rule is null
+     */
+    public void setRule(Rule rule) throws IllegalArgumentException{
+        if (rule == null)
+            throw new IllegalArgumentException("Rule must not be null.");
+        this.rule = rule;
+    }
+    
+    /**
+     * Returns the rule used to compute each generation.
+     * 
+     * @return the board's rule
+     */
+    public Rule getRule(){
+        return rule;
+    }
+    
+    public int getSize(){
+        return size;
+    }
+    
+    /**
+     * Returns the number of cells on the board, which may be more than an
+     * int can hold.
+     * 
+     * @return size squared
+     */
+    public long getCellCount(){
+        return (long) size * size;
+    }
+    
+    /**
+     * Returns whether the cell at row x, column y is alive.
+     * 
+     * @param x Row of cell
+     * @param y Column of cell
+     * @return true if the cell is alive
+     * @exception IllegalStateException if the board has been closed
+     */
+    public boolean isAlive(int x, int y) throws IllegalStateException{
+        checkOpen();
+        checkCell(x, y);
+        return (chunk(x).get(wordIndex(x, y)) >>> y & 1L) != 0;
+    }
+    
+    /**
+     * Changes the state of a single cell at row x, column y on the board.
+     * 
+     * @param x Row of cell to be changed
+     * @param y Column of cell to be changed
+     * @exception IllegalStateException if the board has been closed
+     */
+    public void flipCell(int x, int y) throws IllegalStateException{
+        checkOpen();
+        checkCell(x, y);
+        LongBuffer chunk = chunk(x);
+        int word = wordIndex(x, y);
+        chunk.put(word, chunk.get(word) ^ 1L << y);
+    }
+    
+    /**
+     * Returns an array of the names of all the shapes that can be added to
+     * the board with addShape().
+     * 
+     * @return the names of the built-in shapes
+     */
+    public String[] getShapes(){
+        return Shapes.names();
+    }
+    
+    /**
+     * Add a given shape to the board.
+     * 
+     * @param shape String representation of shape to be added, or the path
+     *              of an RLE, Life 1.06 or plaintext pattern file
+     * @param x     row of upper right corner where shape should be added
+     * @param y     column of upper right corner where shape should be added
+     * @exception IllegalArgumentException if the shape is not known or its
+     *            pattern file cannot be read
+     * @exception IllegalStateException if the board has been closed
+     */
+    public void addShape(String shape, int x, int y)
+            throws IllegalArgumentException, IllegalStateException{
+        checkOpen();
+        int[] currShape = Shapes.get(shape);
+        int i;
+        for (i = 0; i < currShape.length / 2; i++)
+            setAlive(x + currShape[2*i], y + currShape[2*i+1]);
+    }
+    
+    /**
+     * Add a pattern to the board as it is read, without caching it. This
+     * suits very large patterns that are only added once.
+     * 
+     * @param in    text of an RLE, Life 1.06 or plaintext pattern
+     * @param x     row of upper right corner where pattern should be added
+     * @param y     column of upper right corner where pattern should be added
+     * @throws IOException if the pattern cannot be read or is not valid
+     * @exception IllegalStateException if the board has been closed
+     */
+    public void addPattern(Reader in, int x, int y)
+            throws IOException, IllegalStateException{
+        checkOpen();
+        PatternReader.read(in, (i, j) -> setAlive(x + i, y + j));
+    }
+    
+    /**
+     * Returns the number of live cells on the board.
+     * 
+     * @return the population of the current generation
+     * @exception IllegalStateException if the board has been closed
+     */
+    public long getPopulation() throws IllegalStateException{
+        checkOpen();
+        long count = 0;
+        int i;
+        for (LongBuffer chunk : chunks)
+            for (i = 0; i < chunk.capacity(); i++)
+                count += Long.bitCount(chunk.get(i));
+        return count;
+    }
+    
+    /**
+     * Calls the visitor with the row and column of every live cell, in row
+     * order.
+     * 
+     * @param visitor visitor to be called for each live cell
+     * @exception IllegalStateException if the board has been closed
+     */
+    public void forEachLive(CellVisitor visitor) throws IllegalStateException{
+        checkOpen();
+        int x, w;
+        for (x = 0; x < size; x++){
+            readRow(x, row, 1);
+            for (w = 1; w <= words; w++){
+                long cells = row[w];
+                while (cells != 0){
+                    visitor.visit(x, ((w - 1) << 6)
+                            + Long.numberOfTrailingZeros(cells));
+                    cells &= cells - 1;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Frees the board's memory. Closing a board more than once has no
+     * further effect.
+     */
+    @Override
+    public void close(){
+        if (closed)
+            return;
+        closed = true;
+        free(buffers);
+        free(nextBuffers);
+        buffers = nextBuffers = null;
+        chunks = nextChunks = null;
+    }
+    
+    // Bring a cell to life.
+    private void setAlive(int x, int y){
+        checkCell(x, y);
+        LongBuffer chunk = chunk(x);
+        int word = wordIndex(x, y);
+        chunk.put(word, chunk.get(word) | 1L << y);
+    }
+    
+    // Copy row x of the current generation into an array.
+    private void readRow(int x, long[] into, int offset){
+        chunks[x / rowsPerChunk].get((x % rowsPerChunk) * words, into, offset,
+                words);
+    }
+    
+    private LongBuffer chunk(int x){
+        return chunks[x / rowsPerChunk];
+    }
+    
+    // Index within its chunk of the word holding cell (x, y).
+    private int wordIndex(int x, int y){
+        return (x % rowsPerChunk) * words + (y >>> 6);
+    }
+    
+    // Check a cell lies on the board, matching the exception a plain 2-d
+    // array would throw.
+    private void checkCell(int x, int y){
+        if (x < 0 || y < 0 || x >= size || y >= size)
+            throw new ArrayIndexOutOfBoundsException("Cell (" + x + ", " + y
+                    + ") is outside a board of size " + size + ".");
+    }
+    
+    private void checkOpen(){
+        if (closed)
+            throw new IllegalStateException("Board has been closed.");
+    }
+    
+    private static void free(ByteBuffer[] buffers){
+        if (INVOKE_CLEANER == null)
+            return;
+        for (ByteBuffer buffer : buffers)
+            if (buffer != null)
+                try {
+                    INVOKE_CLEANER.invokeExact(buffer);
+                } catch (Throwable e) {
+                    // Left for the garbage collector to free
+                }
+    }
+    
+    // Find Unsafe.invokeCleaner(), which frees a direct buffer's memory
+    // without waiting for the buffer to be collected.
+    private static MethodHandle invokeCleaner(){
+        try {
+            Class<?> unsafe = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafe.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup().findVirtual(unsafe, "invokeCleaner",
+                    MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of parsed pattern files. Patterns are kept as
+ * row, column pairs keyed by file path, and are parsed again only when the
+ * file's modification time changes. The cache holds at most a given number
+ * of cells in total, evicting the least recently used patterns beyond that.
+ * 
+ * @author Dennis Windsor
+ */
+public class PatternCache {
+    // A parsed pattern and the modification time of the file it came from
+    private static final class Entry {
+        final long modified;
+        final int[] cells;
+        
+        Entry(long modified, int[] cells){
+            this.modified = modified;
+            this.cells = cells;
+        }
+    }
+    
+    private final long maxCells;
+    private final LinkedHashMap<Path, Entry> patterns;
+    private long cells;
+    
+    /**
+     * Create an empty cache which holds at most maxCells cells in total.
+     * 
+     * @param maxCells  total number of cells to keep
+     * @exception IllegalArgumentException if maxCells is negative
+     */
+    public PatternCache(long maxCells) throws IllegalArgumentException{
+        if (maxCells < 0)
+            throw new IllegalArgumentException("Cell limit must be positive.");
+        this.maxCells = maxCells;
+        this.patterns = new LinkedHashMap<>(16, 0.75f, true);
+    }
+    
+    /**
+     * Returns the live cells of a pattern file as row, column pairs, parsing
+     * the file only if it is not cached or has changed since. The returned
+     * array must not be modified.
+     * 
+     * @param path  pattern file
+     * @return the row, column pairs of the pattern's live cells
+     * @throws IOException if the file cannot be read or is not a valid
+     *         pattern
+     */
+    public synchronized int[] get(Path path) throws IOException{
+        Path key = path.toAbsolutePath().normalize();
+        long modified = Files.getLastModifiedTime(key).toMillis();
+        Entry entry = patterns.get(key);
+        if (entry != null && entry.modified == modified)
+            return entry.cells;
+        if (entry != null)
+            remove(key);
+        int[][] buffer = {new int[64]};
+        int[] length = {0};
+        PatternReader.read(key, (x, y) -> {
+            if (length[0] == buffer[0].length)
+                buffer[0] = Arrays.copyOf(buffer[0], length[0] * 2);
+            buffer[0][length[0]++] = x;
+            buffer[0][length[0]++] = y;
+        });
+        int[] pattern = Arrays.copyOf(buffer[0], length[0]);
+        patterns.put(key, new Entry(modified, pattern));
+        cells += pattern.length / 2;
+        evict(key);
+        return pattern;
+    }
+    
+    /**
+     * Returns the number of cells held by the cache.
+     * 
+     * @return total cells of all cached patterns
+     */
+    public synchronized long getCellCount(){
+        return cells;
+    }
+    
+    /**
+     * Removes every pattern from the cache.
+     */
+    public synchronized void clear(){
+        patterns.clear();
+        cells = 0;
+    }
+    
+    private void remove(Path key){
+        Entry entry = patterns.remove(key);
+        cells -= entry.cells.length / 2;
+    }
+    
+    // Drop least recently used patterns until the cache is within its limit,
+    // never dropping the pattern just added.
+    private void evict(Path keep){
+        Iterator<Map.Entry<Path, Entry>> oldest =
+                patterns.entrySet().iterator();
+        while (cells > maxCells && oldest.hasNext()){
+            Map.Entry<Path, Entry> entry = oldest.next();
+            if (entry.getKey().equals(keep))
+                continue;
+            cells -= entry.getValue().cells.length / 2;
+            oldest.remove();
+        }
+    }
+}
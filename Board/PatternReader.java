@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Streaming reader for pattern files in the RLE, Life 1.06 and plaintext
+ * formats. Cells are passed to a visitor as they are read, so the text of a
+ * pattern is never held in memory and large patterns can be written straight
+ * into a board.
+ * 
+ * Rows and columns are given relative to the pattern's upper corner for RLE
+ * and plaintext files, and as written for Life 1.06 files, whose coordinates
+ * may be negative.
+ * 
+ * @author Dennis Windsor
+ */
+public final class PatternReader {
+    // Characters looked at to decide the format of a pattern
+    private static final int PEEK = 16;
+    
+    private PatternReader(){
+    }
+    
+    /**
+     * Reads a pattern file, calling the visitor with the row and column of
+     * each live cell.
+     * 
+     * @param path  pattern file to read
+     * @param cells visitor to be called for each live cell
+     * @throws IOException if the file cannot be read or is not a valid
+     *         pattern
+     */
+    public static void read(Path path, CellVisitor cells) throws IOException{
+        try (Reader in = Files.newBufferedReader(path,
+                StandardCharsets.ISO_8859_1)) {
+            read(in, cells);
+        }
+    }
+    
+    /**
+     * Reads a pattern, calling the visitor with the row and column of each
+     * live cell. The format is detected from its first few characters:
+     * "#Life 1.06" starts a Life 1.06 file, and '!' or rows of only '.', 'O'
+     * and '*' a plaintext file. Anything else is read as RLE.
+     * 
+     * @param in    text of the pattern
+     * @param cells visitor to be called for each live cell
+     * @throws IOException if the text cannot be read or is not a valid
+     *         pattern
+     */
+    public static void read(Reader in, CellVisitor cells) throws IOException{
+        BufferedReader reader = in instanceof BufferedReader
+                ? (BufferedReader) in : new BufferedReader(in);
+        String start = peek(reader, PEEK);
+        if (start.isEmpty())
+            return;
+        if (start.startsWith("#Life 1.06"))
+            readLife106(reader, cells);
+        else if (start.startsWith("#Life"))
+            throw new IOException("Unsupported format: "
+                    + start.split("\\R", 2)[0]);
+        else if (start.startsWith("!") || isPlaintext(start))
+            readPlaintext(reader, cells);
+        else
+            readRle(reader, cells);
+    }
+    
+    // Return up to length characters of the text ahead without consuming
+    // them.
+    private static String peek(BufferedReader in, int length)
+            throws IOException{
+        char[] buffer = new char[length];
+        int read = 0;
+        int n;
+        in.mark(length);
+        while (read < length
+                && (n = in.read(buffer, read, length - read)) != -1)
+            read += n;
+        in.reset();
+        return new String(buffer, 0, read);
+    }
+    
+    // Whether text is made only of plaintext cells and line breaks. RLE
+    // rows end with '$' and almost always use counts and 'b' or 'o', so a
+    // pattern starting like this is plaintext without a comment line.
+    private static boolean isPlaintext(String text){
+        boolean cell = false;
+        int i;
+        for (i = 0; i < text.length(); i++){
+            char c = text.charAt(i);
+            if (c == '.' || c == 'O' || c == '*')
+                cell = true;
+            else if (c != '\r' && c != '\n')
+                return false;
+        }
+        return cell;
+    }
+    
+    // Read Life 1.06: one "x y" pair per line, x being the column.
+    private static void readLife106(BufferedReader in, CellVisitor cells)
+            throws IOException{
+        String line;
+        int number = 0;
+        while ((line = in.readLine()) != null){
+            number++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            String[] parts = line.split("\\s+");
+            if (parts.length != 2)
+                throw new IOException("Line " + number
+                        + ": expected two coordinates.");
+            try {
+                cells.visit(Integer.parseInt(parts[1]),
+                        Integer.parseInt(parts[0]));
+            } catch (NumberFormatException e) {
+                throw new IOException("Line " + number
+                        + ": invalid coordinate.", e);
+            }
+        }
+    }
+    
+    // Read plaintext: '!' starts a comment line and 'O' or '*' marks a live
+    // cell.
+    private static void readPlaintext(BufferedReader in, CellVisitor cells)
+            throws IOException{
+        String line;
+        int row = 0;
+        while ((line = in.readLine()) != null){
+            if (line.startsWith("!"))
+                continue;
+            int col;
+            for (col = 0; col < line.length(); col++){
+                char c = line.charAt(col);
+                if (c == 'O' || c == '*')
+                    cells.visit(row, col);
+            }
+            row++;
+        }
+    }
+    
+    // Read RLE: '#' comment lines, an optional "x = m, y = n" header, then
+    // runs of <count><tag> where 'b' or '.' is dead, any other letter is
+    // alive, '$' ends a row and '!' ends the pattern.
+    private static void readRle(BufferedReader in, CellVisitor cells)
+            throws IOException{
+        // Skip comment and header lines a character at a time, so a long
+        // first line of cells is never read in whole
+        int c;
+        while (true){
+            in.mark(1);
+            c = in.read();
+            if (c == -1)
+                return;
+            if (c == '#' || c == 'x')
+                while (c != -1 && c != '\n')
+                    c = in.read();
+            else if (!Character.isWhitespace(c)){
+                in.reset();
+                break;
+            }
+        }
+        int row = 0;
+        int col = 0;
+        long count = 0;
+        while ((c = in.read()) != -1){
+            if (c >= '0' && c <= '9'){
+                count = count * 10 + (c - '0');
+                if (count > Integer.MAX_VALUE)
+                    throw new IOException("Run length too long.");
+                continue;
+            }
+            int run = count == 0 ? 1 : (int) count;
+            count = 0;
+            if (c == 'b' || c == '.')
+                col += run;
+            else if (c == '$'){
+                row += run;
+                col = 0;
+            }
+            else if (c == '!')
+                return;
+            else if (Character.isLetter(c)){
+                while (run-- > 0)
+                    cells.visit(row, col++);
+            }
+            else if (!Character.isWhitespace(c))
+                throw new IOException("Unexpected character '" + (char) c
+                        + "' in RLE.");
+        }
+    }
+}
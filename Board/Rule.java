@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+/**
+ * A Life-like cellular automaton rule in B/S notation, giving the numbers of
+ * live neighbours for which a dead cell is born and a live cell survives.
+ * Conway's Game of Life is B3/S23.
+ * 
+ * Each rule is compiled to a 512-entry lookup table indexed by a cell's 3x3
+ * neighbourhood, with bit 4 of the index being the cell itself, for engines
+ * that work a cell at a time. Packed engines use births() and survivals()
+ * directly.
+ * 
+ * @author Dennis Windsor
+ */
+public final class Rule {
+    /** Conway's Game of Life, B3/S23. */
+    public static final Rule LIFE = parse("B3/S23");
+    /** HighLife, B36/S23, which has a self-replicating pattern. */
+    public static final Rule HIGHLIFE = parse("B36/S23");
+    /** Day & Night, B3678/S34678, symmetric between live and dead cells. */
+    public static final Rule DAY_AND_NIGHT = parse("B3678/S34678");
+    /** Seeds, B2/S, in which every live cell dies each generation. */
+    public static final Rule SEEDS = parse("B2/S");
+    
+    // Bit n is set if n live neighbours cause a birth or survival
+    private final int births;
+    private final int survivals;
+    // Next state of a cell for each 3x3 neighbourhood
+    private final boolean[] table;
+    
+    private Rule(int births, int survivals){
+        this.births = births;
+        this.survivals = survivals;
+        table = new boolean[512];
+        int i;
+        for (i = 0; i < 512; i++){
+            int count = Integer.bitCount(i & ~0x10);
+            table[i] = (i & 0x10) != 0 ? (survivals >>> count & 1) != 0
+                    : (births >>> count & 1) != 0;
+        }
+    }
+    
+    /**
+     * Parses a rule in B/S notation such as "B3/S23" or "B36/S23". Letters
+     * may be in either case and either part may come first. The older S/B
+     * notation of two bare digit lists, such as "23/3", is also accepted.
+     * Each neighbour count may appear at most once in a list.
+     * 
+     * @param notation  the rule to parse
+     * @return the parsed rule
+     * @exception IllegalArgumentException if the rule is not valid
+     */
+    public static Rule parse(String notation) throws IllegalArgumentException{
+        String[] parts = notation.trim().split("/", -1);
+        if (parts.length != 2)
+            throw new IllegalArgumentException("Invalid rule: " + notation);
+        int births = -1;
+        int survivals = -1;
+        int i;
+        for (i = 0; i < 2; i++){
+            String part = parts[i].trim();
+            char kind = part.isEmpty() ? ' '
+                    : Character.toUpperCase(part.charAt(0));
+            if (kind == 'B' && births < 0)
+                births = digits(part.substring(1), notation);
+            else if (kind == 'S' && survivals < 0)
+                survivals = digits(part.substring(1), notation);
+            else if (kind != 'B' && kind != 'S' && births < 0
+                    && survivals < 0 && i == 0){
+                // S/B notation
+                survivals = digits(part, notation);
+                births = digits(parts[1].trim(), notation);
+                break;
+            }
+            else
+                throw new IllegalArgumentException("Invalid rule: "
+                        + notation);
+        }
+        return new Rule(births, survivals);
+    }
+    
+    // Parse a list of distinct neighbour counts into a bit set.
+    private static int digits(String counts, String notation){
+        int bits = 0;
+        int i;
+        for (i = 0; i < counts.length(); i++){
+            char c = counts.charAt(i);
+            if (c < '0' || c > '8' || (bits >>> (c - '0') & 1) != 0)
+                throw new IllegalArgumentException("Invalid rule: "
+                        + notation);
+            bits |= 1 << (c - '0');
+        }
+        return bits;
+    }
+    
+    /**
+     * Returns the next state of a cell given its 3x3 neighbourhood, packed
+     * row by row into the low nine bits with the cell itself in bit 4.
+     * 
+     * @param neighbourhood the packed neighbourhood
+     * @return true if the cell is alive in the next generation
+     */
+    public boolean next(int neighbourhood){
+        return table[neighbourhood & 511];
+    }
+    
+    /**
+     * Returns whether a dead cell with the given number of live neighbours is
+     * born.
+     * 
+     * @param neighbours number of live neighbours
+     * @return true if the cell comes alive
+     */
+    public boolean isBirth(int neighbours){
+        return (births >>> neighbours & 1) != 0;
+    }
+    
+    /**
+     * Returns whether a live cell with the given number of live neighbours
+     * survives.
+     * 
+     * @param neighbours number of live neighbours
+     * @return true if the cell stays alive
+     */
+    public boolean isSurvival(int neighbours){
+        return (survivals >>> neighbours & 1) != 0;
+    }
+    
+    // Neighbour counts causing births, as a bit set.
+    int births(){
+        return births;
+    }
+    
+    // Neighbour counts causing survival, as a bit set.
+    int survivals(){
+        return survivals;
+    }
+    
+    // Whether this is Conway's rule, which packed engines have a faster
+    // path for.
+    boolean isLife(){
+        return births == 1 << 3 && survivals == (1 << 2 | 1 << 3);
+    }
+    
+    @Override
+    public boolean equals(Object other){
+        return other instanceof Rule && ((Rule) other).births == births
+                && ((Rule) other).survivals == survivals;
+    }
+    
+    @Override
+    public int hashCode(){
+        return births << 9 | survivals;
+    }
+    
+    /**
+     * Returns the rule in B/S notation, such as "B3/S23".
+     * 
+     * @return the rule's notation
+     */
+    @Override
+    public String toString(){
+        StringBuilder notation = new StringBuilder("B");
+        int i;
+        for (i = 0; i <= 8; i++)
+            if (isBirth(i))
+                notation.append(i);
+        notation.append("/S");
+        for (i = 0; i <= 8; i++)
+            if (isSurvival(i))
+                notation.append(i);
+        return notation.toString();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+
+/**
+ * The library of shapes that can be added to a board. Shapes are stored as
+ * row, column pairs relative to the shape's upper corner and are shared by
+ * every board. Names that are not built-in shapes are read as the paths of
+ * pattern files, which are parsed once and cached.
+ * 
+ * @author Dennis Windsor
+ */
+final class Shapes {
+    // Collection of shapes that can be added to board
+    private static final HashMap<String, int[]> shapes = createShapes();
+    // Parsed pattern files, holding up to 16 million cells
+    private static final PatternCache patterns = new PatternCache(1 << 24);
+    
+    private Shapes(){
+    }
+
+    // Populate shapes hashtable.
+    private static HashMap<String, int[]> createShapes() {
+        HashMap<String, int[]> shapes = new HashMap<>();
+        // Still lifes
+        shapes.put("block", new int[] {0,0,0,1,1,0,1,1});
+        shapes.put("beehive", new int[] {0,1,0,2,1,0,1,3,2,1,2,2});
+        shapes.put("loaf", new int[] {0,1,0,2,1,0,1,3,2,1,2,3,3,2});
+        shapes.put("boat", new int[] {0,0,0,1,1,0,1,2,2,1});
+        shapes.put("tub", new int[] {0,1,1,0,1,2,2,1});
+        
+        // Oscillators
+        shapes.put("blinker", new int[] {0,1,1,1,2,1});
+        shapes.put("toad", new int[] {1,1,1,2,1,3,2,0,2,1,2,2});
+        shapes.put("beacon", new int[] {0,0,0,1,1,0,2,3,3,2,3,3});
+        
+        // Spaceships
+        shapes.put("glider", new int[] {0,1,1,2,2,0,2,1,2,2});
+        shapes.put("LWS", new int[] {0,0,0,3,1,4,2,0,2,4,3,1,3,2,3,3,3,4});
+
+        // Methusalahs
+        shapes.put("r-pentomino", new int[] {0,1,0,2,1,0,1,1,2,1});
+        shapes.put("diehard", new int[] {0,6,1,0,1,1,2,1,2,5,2,6,2,7});
+        shapes.put("acorn", new int[] {0,1,1,3,2,0,2,1,2,4,2,5,2,6});
+        return shapes;
+    }
+    
+    /**
+     * Returns the cells of a shape as row, column pairs. The returned array
+     * must not be modified.
+     * 
+     * @param name  name of a built-in shape or path of a pattern file
+     * @return the row, column pairs of the shape's live cells
+     * @exception IllegalArgumentException if the shape is not known or its
+     *            pattern file cannot be read
+     */
+    static int[] get(String name) throws IllegalArgumentException{
+        int[] shape = shapes.get(name);
+        if (shape != null)
+            return shape;
+        Path path;
+        try {
+            path = Paths.get(name);
+        } catch (InvalidPathException e) {
+            throw new IllegalArgumentException("Unknown shape: " + name, e);
+        }
+        if (!Files.isRegularFile(path))
+            throw new IllegalArgumentException("Unknown shape: " + name);
+        try {
+            return patterns.get(path);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read pattern " + name
+                    + ": " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Returns the names of all known shapes.
+     * 
+     * @return an array of shape names
+     */
+    static String[] names(){
+        return shapes.keySet().toArray(new String[shapes.size()]);
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Arrays;
+
+/**
+ * Worker process of a ShardedBoard. Each worker owns a strip of whole rows
+ * of the board and only holds those rows, plus a halo row above and below
+ * that the coordinator fills with its neighbours' edge rows before every
+ * generation. Workers are started by ShardedBoard and connect back to it
+ * over a loopback socket, then follow its commands until told to close or
+ * the connection ends.
+ * 
+ * @author Dennis Windsor
+ */
+public final class ShardWorker {
+    // Commands sent by the coordinator. Every command but CLOSE is answered;
+    // those that can change the strip's edge rows are answered with them.
+    static final int INIT = 1;
+    static final int STEP = 2;
+    static final int SET_ALIVE = 3;
+    static final int FLIP = 4;
+    static final int IS_ALIVE = 5;
+    static final int POPULATION = 6;
+    static final int LIVE_CELLS = 7;
+    static final int RULE = 8;
+    static final int BOUNDARY = 9;
+    static final int CLOSE = 10;
+    // How a halo row is sent: empty, as the given row, or as the given row
+    // with its columns reversed
+    static final int HALO_EMPTY = 0;
+    static final int HALO_ROW = 1;
+    static final int HALO_REVERSED = 2;
+    
+    private final int size;
+    private final int first;
+    private final int rows;
+    private final int words;
+    private final int stride;
+    private final long lastMask;
+    // Packed rows in BitRows' layout: the halo row above, the strip's rows,
+    // the halo row below, then a scratch row halos are received into
+    private long[] cells;
+    private long[] next;
+    private Rule rule;
+    private Boundary boundary;
+    
+    private ShardWorker(int size, int first, int rows, Rule rule,
+            Boundary boundary){
+        this.size = size;
+        this.first = first;
+        this.rows = rows;
+        this.rule = rule;
+        this.boundary = boundary;
+        words = (size + 63) >>> 6;
+        stride = words + 2;
+        lastMask = (size & 63) == 0 ? -1L : (1L << (size & 63)) - 1;
+        cells = new long[(rows + 3) * stride];
+        next = new long[cells.length];
+    }
+    
+    /**
+     * Connects to a coordinator and serves it until closed.
+     * 
+     * @param args  the coordinator's port on the loopback address and this
+     *              worker's shard number
+     * @throws IOException if the connection fails
+     */
+    public static void main(String[] args) throws IOException {
+        int port = Integer.parseInt(args[0]);
+        int shard = Integer.parseInt(args[1]);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(),
+                port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    socket.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream(),
+                            1 << 16));
+            out.writeInt(shard);
+            out.flush();
+            if (in.readInt() != INIT)
+                throw new IOException("Expected INIT from coordinator.");
+            int size = in.readInt();
+            int first = in.readInt();
+            int rows = in.readInt();
+            Rule rule = Rule.parse(in.readUTF());
+            Boundary boundary = Boundary.values()[in.readInt()];
+            new ShardWorker(size, first, rows, rule, boundary).serve(in, out);
+        } catch (EOFException e) {
+            // Coordinator went away
+        }
+    }
+    
+    // Answer commands until told to close.
+    private void serve(DataInputStream in, DataOutputStream out)
+            throws IOException{
+        writeEdges(out);
+        while (true){
+            int command = in.readInt();
+            switch (command){
+                case STEP:
+                    readHalo(in, 0);
+                    readHalo(in, rows + 1);
+                    step();
+                    writeEdges(out);
+                    break;
+                case SET_ALIVE: {
+                    int n = in.readInt();
+                    int i;
+                    for (i = 0; i < n; i++){
+                        int x = in.readInt() - first + 1;
+                        int y = in.readInt();
+                        cells[x * stride + (y >>> 6) + 1] |= 1L << y;
+                    }
+                    writeEdges(out);
+                    break;
+                }
+                case FLIP: {
+                    int x = in.readInt() - first + 1;
+                    int y = in.readInt();
+                    cells[x * stride + (y >>> 6) + 1] ^= 1L << y;
+                    writeEdges(out);
+                    break;
+                }
+                case IS_ALIVE: {
+                    int x = in.readInt() - first + 1;
+                    int y = in.readInt();
+                    out.writeBoolean(
+                            (cells[x * stride + (y >>> 6) + 1] >>> y & 1) != 0);
+                    break;
+                }
+                case POPULATION:
+                    out.writeLong(population());
+                    break;
+                case LIVE_CELLS:
+                    writeLiveCells(out);
+                    break;
+                case RULE:
+                    rule = Rule.parse(in.readUTF());
+                    out.writeBoolean(true);
+                    break;
+                case BOUNDARY:
+                    boundary = Boundary.values()[in.readInt()];
+                    out.writeBoolean(true);
+                    break;
+                case CLOSE:
+                    return;
+                default:
+                    throw new IOException("Unknown command " + command);
+            }
+            out.flush();
+        }
+    }
+    
+    // Read a halo row into the row at the given index.
+    private void readHalo(DataInputStream in, int row) throws IOException{
+        int kind = in.readInt();
+        int at = row * stride;
+        Arrays.fill(cells, at, at + stride, 0L);
+        if (kind == HALO_EMPTY)
+            return;
+        int scratch = (rows + 2) * stride;
+        int w;
+        for (w = 1; w <= words; w++)
+            cells[(kind == HALO_REVERSED ? scratch : at) + w] = in.readLong();
+        if (kind == HALO_REVERSED)
+            Edges.reverse(cells, scratch, at, size, words, lastMask);
+    }
+    
+    // Advance the strip one generation between its halo rows, first filling
+    // the ghost columns of every row for the boundary, or emptying them in
+    // case the boundary was changed to dead.
+    private void step(){
+        int i;
+        for (i = 0; i <= rows + 1; i++){
+            int row = i * stride;
+            if (boundary != Boundary.DEAD)
+                Edges.fillColumns(cells, row, size, words, boundary);
+            else {
+                cells[row] = 0;
+                cells[row + words] &= lastMask;
+                cells[row + words + 1] = 0;
+            }
+        }
+        for (i = 1; i <= rows; i++)
+            BitRows.step(cells, (i - 1) * stride, i * stride, (i + 1) * stride,
+                    next, i * stride, words, lastMask, rule);
+        long[] old = cells;
+        cells = next;
+        next = old;
+    }
+    
+    // Send the strip's first and last rows, without ghost columns.
+    private void writeEdges(DataOutputStream out) throws IOException{
+        writeRow(out, 1);
+        writeRow(out, rows);
+        out.flush();
+    }
+    
+    private void writeRow(DataOutputStream out, int row) throws IOException{
+        int w;
+        for (w = 1; w <= words; w++)
+            out.writeLong(cells[row * stride + w]
+                    & (w == words ? lastMask : -1L));
+    }
+    
+    // Live cells of the strip's rows.
+    private long population(){
+        long count = 0;
+        int i, w;
+        for (i = 1; i <= rows; i++)
+            for (w = 1; w <= words; w++)
+                count += Long.bitCount(cells[i * stride + w]
+                        & (w == words ? lastMask : -1L));
+        return count;
+    }
+    
+    // Send every live cell as a row and column pair, ended by a row of -1.
+    private void writeLiveCells(DataOutputStream out) throws IOException{
+        int i, w;
+        for (i = 1; i <= rows; i++)
+            for (w = 1; w <= words; w++){
+                long bits = cells[i * stride + w]
+                        & (w == words ? lastMask : -1L);
+                while (bits != 0){
+                    out.writeInt(first + i - 1);
+                    out.writeInt(((w - 1) << 6)
+                            + Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+        out.writeInt(-1);
+    }
+}
@@ -0,0 +1,476 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A board split across worker processes on the same host, for boards too
+ * large for one JVM's heap. Each worker is a separate JVM running ShardWorker
+ * that owns a strip of whole rows. Before every generation the coordinator
+ * sends each worker the rows bordering its strip as halo rows, taken from
+ * the edge rows its neighbours returned from the last generation, so the
+ * workers advance in lockstep and the board evolves exactly as a single
+ * Board of the same size, rule and boundary would.
+ * 
+ * Workers connect back to the coordinator over loopback sockets. The board
+ * must be closed to stop them.
+ * 
+ * @author Dennis Windsor
+ */
+public class ShardedBoard implements AutoCloseable {
+    // How long to wait for a worker to start and connect
+    private static final int CONNECT_TIMEOUT = 60_000;
+    
+    private final int size;
+    private final int words;
+    private final int[] firstRows;
+    private final List<Process> processes = new ArrayList<>();
+    private final Socket[] sockets;
+    private final DataInputStream[] ins;
+    private final DataOutputStream[] outs;
+    // First and last row of each strip, as last returned by its worker
+    private final long[][] firstEdges;
+    private final long[][] lastEdges;
+    private long generation;
+    private Rule rule = Rule.LIFE;
+    private Boundary boundary = Boundary.DEAD;
+    
+    /**
+     * Create a new size by size board, with all cells empty, split across
+     * the given number of worker processes.
+     * 
+     * @param size      length of one row of the grid
+     * @param shards    number of worker processes
+     * @throws IOException if the workers cannot be started
+     * @exception IllegalArgumentException if shards is not from 1 to size
+     */
+    public ShardedBoard(int size, int shards) throws IOException,
+            IllegalArgumentException{
+        this(size, shards, Collections.emptyList());
+    }
+    
+    /**
+     * Create a new size by size board, with all cells empty, split across
+     * the given number of worker processes, each started with the given JVM
+     * options, such as a heap size.
+     * 
+     * @param size          length of one row of the grid
+     * @param shards        number of worker processes
+     * @param jvmOptions    options passed to each worker's JVM
+     * @throws IOException if the workers cannot be started
+     * @exception IllegalArgumentException if shards is not from 1 to size
+     */
+    public ShardedBoard(int size, int shards, List<String> jvmOptions)
+            throws IOException, IllegalArgumentException{
+        if (shards < 1 || shards > size)
+            throw new IllegalArgumentException(
+                    "Shards must be from 1 to the board size.");
+        this.size = size;
+        words = (size + 63) >>> 6;
+        firstRows = new int[shards + 1];
+        sockets = new Socket[shards];
+        ins = new DataInputStream[shards];
+        outs = new DataOutputStream[shards];
+        firstEdges = new long[shards][words];
+        lastEdges = new long[shards][words];
+        int i;
+        for (i = 0; i <= shards; i++)
+            firstRows[i] = (int) ((long) size * i / shards);
+        try {
+            start(jvmOptions);
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+    
+    // Start the workers, wait for each to connect and give it its strip.
+    private void start(List<String> jvmOptions) throws IOException{
+        try (ServerSocket server = new ServerSocket(0, sockets.length,
+                InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(CONNECT_TIMEOUT);
+            String java = Paths.get(System.getProperty("java.home"), "bin",
+                    "java").toString();
+            int i;
+            for (i = 0; i < sockets.length; i++){
+                List<String> command = new ArrayList<>();
+                command.add(java);
+                command.addAll(jvmOptions);
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add(ShardWorker.class.getName());
+                command.add(Integer.toString(server.getLocalPort()));
+                command.add(Integer.toString(i));
+                processes.add(new ProcessBuilder(command)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start());
+            }
+            for (i = 0; i < sockets.length; i++){
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    throw new IOException("Worker did not connect.", e);
+                }
+                socket.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(socket.getInputStream(),
+                                1 << 16));
+                int shard = in.readInt();
+                if (shard < 0 || shard >= sockets.length
+                        || sockets[shard] != null)
+                    throw new IOException("Unexpected worker " + shard);
+                sockets[shard] = socket;
+                ins[shard] = in;
+                outs[shard] = new DataOutputStream(new BufferedOutputStream(
+                        socket.getOutputStream(), 1 << 16));
+            }
+        }
+        int i;
+        for (i = 0; i < sockets.length; i++){
+            DataOutputStream out = outs[i];
+            out.writeInt(ShardWorker.INIT);
+            out.writeInt(size);
+            out.writeInt(firstRows[i]);
+            out.writeInt(firstRows[i + 1] - firstRows[i]);
+            out.writeUTF(rule.toString());
+            out.writeInt(boundary.ordinal());
+            out.flush();
+        }
+        for (i = 0; i < sockets.length; i++)
+            readEdges(i);
+    }
+    
+    /**
+     * Advances the board one generation. Every worker computes its strip at
+     * the same time, and this returns once all of them have finished.
+     * 
+     * @throws IOException if a worker fails
+     */
+    public void update() throws IOException{
+        int shards = sockets.length;
+        int i;
+        for (i = 0; i < shards; i++){
+            DataOutputStream out = outs[i];
+            out.writeInt(ShardWorker.STEP);
+            // Row above the strip, then row below
+            if (i > 0)
+                writeHalo(out, ShardWorker.HALO_ROW, lastEdges[i - 1]);
+            else
+                writeBoundaryHalo(out, lastEdges[shards - 1], firstEdges[0]);
+            if (i < shards - 1)
+                writeHalo(out, ShardWorker.HALO_ROW, firstEdges[i + 1]);
+            else
+                writeBoundaryHalo(out, firstEdges[0], lastEdges[shards - 1]);
+            out.flush();
+        }
+        for (i = 0; i < shards; i++)
+            readEdges(i);
+        generation++;
+    }
+    
+    // Send the halo row beyond an edge of the board: the row at the far
+    // edge when wrapping, reversed for a Klein bottle, or the row at this
+    // edge for a mirror.
+    private void writeBoundaryHalo(DataOutputStream out, long[] opposite,
+            long[] adjacent) throws IOException{
+        switch (boundary){
+            case TORUS:
+                writeHalo(out, ShardWorker.HALO_ROW, opposite);
+                break;
+            case KLEIN:
+                writeHalo(out, ShardWorker.HALO_REVERSED, opposite);
+                break;
+            case MIRROR:
+                writeHalo(out, ShardWorker.HALO_ROW, adjacent);
+                break;
+            default:
+                out.writeInt(ShardWorker.HALO_EMPTY);
+                break;
+        }
+    }
+    
+    private static void writeHalo(DataOutputStream out, int kind, long[] row)
+            throws IOException{
+        out.writeInt(kind);
+        for (long word : row)
+            out.writeLong(word);
+    }
+    
+    // Read a strip's first and last rows after a command that may have
+    // changed them. Every halo of a generation is sent before any edges are
+    // read, so the rows can be overwritten in place.
+    private void readEdges(int shard) throws IOException{
+        DataInputStream in = ins[shard];
+        int w;
+        for (w = 0; w < words; w++)
+            firstEdges[shard][w] = in.readLong();
+        for (w = 0; w < words; w++)
+            lastEdges[shard][w] = in.readLong();
+    }
+    
+    /**
+     * Returns the number of generations the board has been advanced.
+     * 
+     * @return the current generation
+     */
+    public long getGeneration(){
+        return generation;
+    }
+    
+    public int getSize(){
+        return size;
+    }
+    
+    /**
+     * Returns the number of worker processes the board is split across.
+     * 
+     * @return number of workers
+     */
+    public int getShards(){
+        return sockets.length;
+    }
+    
+    /**
+     * Sets the rule used to compute each following generation.
+     * 
+     * @param rule  the new rule
+     * @throws IOException if a worker fails
+     * @exception IllegalArgumentException if rule is null
+     */
+    public void setRule(Rule rule) throws IOException,
+            IllegalArgumentException{
+        if (rule == null)
+            throw new IllegalArgumentException("Rule must not be null.");
+        int i;
+        for (i = 0; i < sockets.length; i++){
+            outs[i].writeInt(ShardWorker.RULE);
+            outs[i].writeUTF(rule.toString());
+            outs[i].flush();
+        }
+        for (i = 0; i < sockets.length; i++)
+            ins[i].readBoolean();
+        this.rule = rule;
+    }
+    
+    /**
+     * Returns the rule used to compute each generation.
+     * 
+     * @return the board's rule
+     */
+    public Rule getRule(){
+        return rule;
+    }
+    
+    /**
+     * Sets how cells beyond the edges of the board are treated by each
+     * following generation.
+     * 
+     * @param boundary  the new boundary mode
+     * @throws IOException if a worker fails
+     * @exception IllegalArgumentException if boundary is null
+     */
+    public void setBoundary(Boundary boundary) throws IOException,
+            IllegalArgumentException{
+        if (boundary == null)
+            throw new IllegalArgumentException("Boundary must not be null.");
+        int i;
+        for (i = 0; i < sockets.length; i++){
+            outs[i].writeInt(ShardWorker.BOUNDARY);
+            outs[i].writeInt(boundary.ordinal());
+            outs[i].flush();
+        }
+        for (i = 0; i < sockets.length; i++)
+            ins[i].readBoolean();
+        this.boundary = boundary;
+    }
+    
+    /**
+     * Returns how cells beyond the edges of the board are treated.
+     * 
+     * @return the board's boundary mode
+     */
+    public Boundary getBoundary(){
+        return boundary;
+    }
+    
+    /**
+     * Returns whether the cell at row x, column y is alive.
+     * 
+     * @param x Row of cell
+     * @param y Column of cell
+     * @return true if the cell is alive
+     * @throws IOException if the worker fails
+     */
+    public boolean isAlive(int x, int y) throws IOException{
+        int shard = shardOf(x, y);
+        outs[shard].writeInt(ShardWorker.IS_ALIVE);
+        outs[shard].writeInt(x);
+        outs[shard].writeInt(y);
+        outs[shard].flush();
+        return ins[shard].readBoolean();
+    }
+    
+    /**
+     * Changes the state of a single cell at row x, column y on the board.
+     * 
+     * @param x Row of cell to be changed
+     * @param y Column of cell to be changed
+     * @throws IOException if the worker fails
+     */
+    public void flipCell(int x, int y) throws IOException{
+        int shard = shardOf(x, y);
+        outs[shard].writeInt(ShardWorker.FLIP);
+        outs[shard].writeInt(x);
+        outs[shard].writeInt(y);
+        outs[shard].flush();
+        readEdges(shard);
+    }
+    
+    /**
+     * Add a given shape to the board.
+     * 
+     * @param shape String representation of shape to be added, or the path
+     *              of an RLE, Life 1.06 or plaintext pattern file
+     * @param x     row of upper right corner where shape should be added
+     * @param y     column of upper right corner where shape should be added
+     * @throws IOException if a worker fails
+     * @exception IllegalArgumentException if the shape is not known or its
+     *            pattern file cannot be read
+     */
+    public void addShape(String shape, int x, int y) throws IOException,
+            IllegalArgumentException{
+        int[] currShape = Shapes.get(shape);
+        int shards = sockets.length;
+        int[] counts = new int[shards];
+        int i;
+        for (i = 0; i < currShape.length/2; i++)
+            counts[shardOf(x + currShape[2*i], y + currShape[2*i+1])]++;
+        for (i = 0; i < shards; i++)
+            if (counts[i] > 0){
+                outs[i].writeInt(ShardWorker.SET_ALIVE);
+                outs[i].writeInt(counts[i]);
+            }
+        for (i = 0; i < currShape.length/2; i++){
+            int row = x + currShape[2*i];
+            int col = y + currShape[2*i+1];
+            DataOutputStream out = outs[shardOf(row, col)];
+            out.writeInt(row);
+            out.writeInt(col);
+        }
+        for (i = 0; i < shards; i++)
+            if (counts[i] > 0){
+                outs[i].flush();
+                readEdges(i);
+            }
+    }
+    
+    /**
+     * Returns the number of live cells on the board.
+     * 
+     * @return the number of live cells
+     * @throws IOException if a worker fails
+     */
+    public long getPopulation() throws IOException{
+        int i;
+        for (i = 0; i < sockets.length; i++){
+            outs[i].writeInt(ShardWorker.POPULATION);
+            outs[i].flush();
+        }
+        long population = 0;
+        for (i = 0; i < sockets.length; i++)
+            population += ins[i].readLong();
+        return population;
+    }
+    
+    /**
+     * Calls the visitor with the row and column of every live cell, in row
+     * order. Cells are streamed from one worker at a time.
+     * 
+     * @param visitor visitor to be called for each live cell
+     * @throws IOException if a worker fails
+     */
+    public void forEachLive(CellVisitor visitor) throws IOException{
+        int i;
+        for (i = 0; i < sockets.length; i++){
+            outs[i].writeInt(ShardWorker.LIVE_CELLS);
+            outs[i].flush();
+            int x;
+            while ((x = ins[i].readInt()) >= 0)
+                visitor.visit(x, ins[i].readInt());
+        }
+    }
+    
+    // Worker owning cell (x, y), checking the cell lies on the board.
+    private int shardOf(int x, int y){
+        if (x < 0 || y < 0 || x >= size || y >= size)
+            throw new ArrayIndexOutOfBoundsException("Cell (" + x + ", " + y
+                    + ") is outside a board of size " + size + ".");
+        int shard = (int) Math.min(sockets.length - 1,
+                (long) x * sockets.length / size);
+        while (firstRows[shard] > x)
+            shard--;
+        while (firstRows[shard + 1] <= x)
+            shard++;
+        return shard;
+    }
+    
+    /**
+     * Stops every worker. The board cannot be used afterwards.
+     */
+    @Override
+    public void close(){
+        int i;
+        for (i = 0; i < sockets.length; i++){
+            if (sockets[i] == null)
+                continue;
+            try {
+                outs[i].writeInt(ShardWorker.CLOSE);
+                outs[i].flush();
+                sockets[i].close();
+            } catch (IOException e) {
+                // The worker is destroyed below regardless
+            }
+            sockets[i] = null;
+        }
+        for (Process process : processes){
+            try {
+                if (!process.waitFor(5, TimeUnit.SECONDS))
+                    process.destroyForcibly();
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+        processes.clear();
+    }
+}
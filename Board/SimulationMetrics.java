@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Records how a simulation is running: the time, population, births, deaths
+ * and allocation of each generation, and the time taken to render each frame.
+ * A board records into the metrics set with Board.setMetrics(); a display
+ * calls recordFrame() itself. Boards without metrics do no extra work.
+ * 
+ * The metrics can be registered as a platform MBean so that they can be
+ * watched with JConsole or VisualVM. Values are recorded by one thread and
+ * may be read from any.
+ * 
+ * @author Dennis Windsor
+ */
+public class SimulationMetrics implements SimulationMetricsMBean {
+    private static final ThreadMXBean THREADS =
+            ManagementFactory.getThreadMXBean();
+    
+    private final Histogram generationNanos = new Histogram();
+    private final Histogram frameNanos = new Histogram();
+    private volatile long generation;
+    private volatile long population;
+    private volatile long births;
+    private volatile long deaths;
+    private volatile long allocatedBytes = -1;
+    private ObjectName name;
+    
+    /**
+     * Records the statistics of one generation.
+     * 
+     * @param generation    the generation computed
+     * @param nanos         time taken to compute it
+     * @param population    live cells in the generation
+     * @param births        cells that came alive
+     * @param deaths        cells that died
+     * @param bytes         bytes allocated computing it, or -1 if unknown,
+     *                      as when it was computed on several threads
+     */
+    public void recordGeneration(long generation, long nanos, long population,
+            long births, long deaths, long bytes){
+        generationNanos.record(nanos);
+        this.generation = generation;
+        this.population = population;
+        this.births = births;
+        this.deaths = deaths;
+        this.allocatedBytes = bytes;
+    }
+    
+    /**
+     * Records the time taken to render one frame.
+     * 
+     * @param nanos time taken to render the frame
+     */
+    public void recordFrame(long nanos){
+        frameNanos.record(nanos);
+    }
+    
+    /**
+     * Returns the number of bytes the calling thread has allocated so far,
+     * for measuring the allocation of a piece of work by difference.
+     * 
+     * @return bytes allocated by this thread, or -1 if the JVM cannot
+     *         measure them
+     */
+    public static long allocatedBytes(){
+        if (THREADS instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) THREADS)
+                    .getCurrentThreadAllocatedBytes();
+        return -1;
+    }
+    
+    /**
+     * Returns the histogram of the time taken by each generation.
+     * 
+     * @return generation times in nanoseconds
+     */
+    public Histogram getGenerationNanos(){
+        return generationNanos;
+    }
+    
+    /**
+     * Returns the histogram of the time taken to render each frame.
+     * 
+     * @return frame times in nanoseconds
+     */
+    public Histogram getFrameNanos(){
+        return frameNanos;
+    }
+    
+    /**
+     * Registers these metrics with the platform MBean server as
+     * "gameoflife:type=SimulationMetrics,name=" followed by the given name.
+     * Any earlier registration of these metrics is removed first.
+     * 
+     * @param name  name distinguishing this simulation from others
+     * @exception IllegalArgumentException if the name is not valid in an
+     *            object name or is already in use
+     */
+    public synchronized void register(String name)
+            throws IllegalArgumentException{
+        unregister();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(
+                    "gameoflife:type=SimulationMetrics,name=" + name);
+            server.registerMBean(this, objectName);
+            this.name = objectName;
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Cannot register metrics as "
+                    + name + ": " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Removes these metrics from the platform MBean server, if registered.
+     */
+    public synchronized void unregister(){
+        if (name == null)
+            return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (InstanceNotFoundException e) {
+            // Already gone
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister metrics.", e);
+        }
+        name = null;
+    }
+    
+    @Override
+    public long getGeneration(){
+        return generation;
+    }
+    
+    @Override
+    public long getGenerationCount(){
+        return generationNanos.getCount();
+    }
+    
+    @Override
+    public long getPopulation(){
+        return population;
+    }
+    
+    @Override
+    public long getBirths(){
+        return births;
+    }
+    
+    @Override
+    public long getDeaths(){
+        return deaths;
+    }
+    
+    @Override
+    public double getGenerationNanosMean(){
+        return generationNanos.getMean();
+    }
+    
+    @Override
+    public long getGenerationNanosP50(){
+        return generationNanos.getValueAtPercentile(50);
+    }
+    
+    @Override
+    public long getGenerationNanosP99(){
+        return generationNanos.getValueAtPercentile(99);
+    }
+    
+    @Override
+    public long getGenerationNanosMax(){
+        return generationNanos.getMax();
+    }
+    
+    @Override
+    public long getAllocatedBytes(){
+        return allocatedBytes;
+    }
+    
+    @Override
+    public long getFrameCount(){
+        return frameNanos.getCount();
+    }
+    
+    @Override
+    public double getFrameNanosMean(){
+        return frameNanos.getMean();
+    }
+    
+    @Override
+    public long getFrameNanosP99(){
+        return frameNanos.getValueAtPercentile(99);
+    }
+    
+    @Override
+    public long getFrameNanosMax(){
+        return frameNanos.getMax();
+    }
+    
+    @Override
+    public void reset(){
+        generationNanos.reset();
+        frameNanos.reset();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+/**
+ * Management interface of SimulationMetrics, through which JConsole,
+ * VisualVM or any other JMX client can watch a running simulation. Times are
+ * in nanoseconds.
+ * 
+ * @author Dennis Windsor
+ */
+public interface SimulationMetricsMBean {
+    
+    /** @return the last generation recorded */
+    long getGeneration();
+    
+    /** @return number of generations recorded */
+    long getGenerationCount();
+    
+    /** @return live cells after the last generation recorded */
+    long getPopulation();
+    
+    /** @return cells that came alive in the last generation recorded */
+    long getBirths();
+    
+    /** @return cells that died in the last generation recorded */
+    long getDeaths();
+    
+    /** @return mean time taken by a generation */
+    double getGenerationNanosMean();
+    
+    /** @return median time taken by a generation */
+    long getGenerationNanosP50();
+    
+    /** @return time that 99% of generations took at most */
+    long getGenerationNanosP99();
+    
+    /** @return longest time taken by a generation */
+    long getGenerationNanosMax();
+    
+    /**
+     * @return bytes allocated by the updating thread during the last
+     *         generation recorded, or -1 if the JVM cannot measure them or
+     *         the generation was computed on other threads as well, as with
+     *         Board.setThreads() or setExecutor()
+     */
+    long getAllocatedBytes();
+    
+    /** @return number of frames recorded */
+    long getFrameCount();
+    
+    /** @return mean time taken to render a frame */
+    double getFrameNanosMean();
+    
+    /** @return time that 99% of frames took at most to render */
+    long getFrameNanosP99();
+    
+    /** @return longest time taken to render a frame */
+    long getFrameNanosMax();
+    
+    /**
+     * Forgets everything recorded so far.
+     */
+    void reset();
+}
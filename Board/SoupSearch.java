@@ -0,0 +1,385 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import Board.CycleDetector.Cycle;
+import Board.CycleDetector.Kind;
+
+/**
+ * Runs many independent random soups on small boards until each dies out,
+ * settles or starts to oscillate, and totals what they settled into.
+ * 
+ * Soup n of a search is filled from a random generator seeded with the
+ * first seed plus n, so a search gives the same totals however many threads
+ * run it. Soups are split between the workers of a fork/join pool, and each
+ * worker takes a board and cycle detector from a shared pool rather than
+ * building new ones, refilling every row of the board in place for each
+ * soup. Totals are kept in adders that workers update without locking.
+ * 
+ * @author Dennis Windsor
+ */
+public class SoupSearch {
+    // Soups run by one task before it stops splitting
+    private static final int CHUNK = 64;
+    
+    private final int size;
+    private final double density;
+    private Rule rule = Rule.LIFE;
+    private long maxGenerations = 10_000;
+    private int maxPeriod = 30;
+    // Boards and detectors left by finished tasks, for the next to reuse
+    private final ConcurrentLinkedQueue<Soup> spares =
+            new ConcurrentLinkedQueue<>();
+    
+    /**
+     * Totals of a finished search.
+     */
+    public static final class Result {
+        private final long soups;
+        private final long[] kinds;
+        private final long generations;
+        private final long population;
+        private final long maxGeneration;
+        private final Histogram settled;
+        private final long nanos;
+        
+        private Result(long soups, long[] kinds, long generations,
+                long population, long maxGeneration, Histogram settled,
+                long nanos){
+            this.soups = soups;
+            this.kinds = kinds;
+            this.generations = generations;
+            this.population = population;
+            this.maxGeneration = maxGeneration;
+            this.settled = settled;
+            this.nanos = nanos;
+        }
+        
+        /**
+         * Returns the number of soups run.
+         * 
+         * @return soups run
+         */
+        public long getSoups(){
+            return soups;
+        }
+        
+        /**
+         * Returns the number of soups that ended in the given kind of cycle.
+         * 
+         * @param kind  kind of cycle
+         * @return soups ending in that kind of cycle
+         */
+        public long getCount(Kind kind){
+            return kinds[kind.ordinal()];
+        }
+        
+        /**
+         * Returns the number of soups that had not settled within the
+         * maximum number of generations.
+         * 
+         * @return soups still running at the limit
+         */
+        public long getUnsettled(){
+            long count = soups;
+            for (long kind : kinds)
+                count -= kind;
+            return count;
+        }
+        
+        /**
+         * Returns the mean generation at which settled soups entered their
+         * cycle.
+         * 
+         * @return mean settling generation, or 0 if none settled
+         */
+        public double getMeanGeneration(){
+            long count = soups - getUnsettled();
+            return count == 0 ? 0 : (double) generations / count;
+        }
+        
+        /**
+         * Returns the latest generation at which a soup entered its cycle.
+         * 
+         * @return longest settling time in generations
+         */
+        public long getMaxGeneration(){
+            return maxGeneration;
+        }
+        
+        /**
+         * Returns the distribution of the generations at which soups entered
+         * their cycles.
+         * 
+         * @return histogram of settling generations
+         */
+        public Histogram getGenerations(){
+            return settled;
+        }
+        
+        /**
+         * Returns the mean population of every soup when it stopped.
+         * 
+         * @return mean final population
+         */
+        public double getMeanPopulation(){
+            return soups == 0 ? 0 : (double) population / soups;
+        }
+        
+        /**
+         * Returns how long the search took.
+         * 
+         * @return wall clock time of the search in nanoseconds
+         */
+        public long getNanos(){
+            return nanos;
+        }
+        
+        /**
+         * Returns how many soups were run each second.
+         * 
+         * @return soups per second of wall clock time
+         */
+        public double getSoupsPerSecond(){
+            return nanos == 0 ? 0 : soups * 1e9 / nanos;
+        }
+        
+        @Override
+        public String toString(){
+            return String.format("%d soups, %.0f soups/s: %d extinct, "
+                    + "%d still, %d oscillating, %d unsettled, settled at "
+                    + "generation %.1f mean, %d max, final population %.1f "
+                    + "mean", soups, getSoupsPerSecond(),
+                    getCount(Kind.EXTINCTION), getCount(Kind.STILL_LIFE),
+                    getCount(Kind.OSCILLATOR), getUnsettled(),
+                    getMeanGeneration(), maxGeneration, getMeanPopulation());
+        }
+    }
+    
+    /**
+     * Create a search of square soups.
+     * 
+     * @param size      length of one row of each board
+     * @param density   chance of each cell of a soup starting alive
+     * @exception IllegalArgumentException if size is negative or density is
+     *                                     not between 0 and 1
+     */
+    public SoupSearch(int size, double density)
+            throws IllegalArgumentException{
+        if (size < 0)
+            throw new IllegalArgumentException("Size must be positive.");
+        if (!(density >= 0 && density <= 1))
+            throw new IllegalArgumentException("Density must be between 0 "
+                    + "and 1.");
+        this.size = size;
+        this.density = density;
+    }
+    
+    /**
+     * Sets the rule soups are run under, by default Conway's rule.
+     * 
+     * @param rule  rule to run soups under
+     * @exception IllegalArgumentException if rule is null
+     */
+    public void setRule(Rule rule) throws IllegalArgumentException{
+        if (rule == null)
+            throw new IllegalArgumentException("Rule must not be null.");
+        if (!rule.equals(this.rule))
+            spares.clear();
+        this.rule = rule;
+    }
+    
+    /**
+     * Sets the number of generations after which a soup that has not
+     * settled is given up on, by default 10000.
+     * 
+     * @param maxGenerations    generations to run each soup for at most
+     * @exception IllegalArgumentException if maxGenerations is negative
+     */
+    public void setMaxGenerations(long maxGenerations)
+            throws IllegalArgumentException{
+        if (maxGenerations < 0)
+            throw new IllegalArgumentException(
+                    "Generations must not be negative.");
+        this.maxGenerations = maxGenerations;
+    }
+    
+    /**
+     * Sets the longest oscillator period a soup is checked for, by default
+     * 30. Soups ending in longer oscillators run to the generation limit.
+     * 
+     * @param maxPeriod longest period to detect
+     * @exception IllegalArgumentException if maxPeriod is not positive
+     */
+    public void setMaxPeriod(int maxPeriod) throws IllegalArgumentException{
+        if (maxPeriod < 1)
+            throw new IllegalArgumentException(
+                    "Largest period must be positive.");
+        if (maxPeriod != this.maxPeriod)
+            spares.clear();
+        this.maxPeriod = maxPeriod;
+    }
+    
+    /**
+     * Runs soups on the common fork/join pool.
+     * 
+     * @param firstSeed seed of the first soup
+     * @param soups     number of soups to run
+     * @return totals of the search
+     * @exception IllegalArgumentException if soups is negative
+     */
+    public Result search(long firstSeed, long soups)
+            throws IllegalArgumentException{
+        return search(firstSeed, soups, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Runs soups on the given fork/join pool, waiting for them all to
+     * finish.
+     * 
+     * @param firstSeed seed of the first soup
+     * @param soups     number of soups to run
+     * @param pool      pool to run soups on
+     * @return totals of the search
+     * @exception IllegalArgumentException if soups is negative
+     */
+    public Result search(long firstSeed, long soups, ForkJoinPool pool)
+            throws IllegalArgumentException{
+        if (soups < 0)
+            throw new IllegalArgumentException(
+                    "Soups must not be negative.");
+        Totals totals = new Totals();
+        long start = System.nanoTime();
+        pool.invoke(new Task(firstSeed, 0, soups, totals));
+        long nanos = System.nanoTime() - start;
+        long[] kinds = new long[totals.kinds.length];
+        int i;
+        for (i = 0; i < kinds.length; i++)
+            kinds[i] = totals.kinds[i].sum();
+        return new Result(soups, kinds, totals.generations.sum(),
+                totals.population.sum(), totals.maxGeneration.get(),
+                totals.settled, nanos);
+    }
+    
+    // Shared totals, updated by every task without locking.
+    private static final class Totals {
+        final LongAdder[] kinds = new LongAdder[Kind.values().length];
+        final LongAdder generations = new LongAdder();
+        final LongAdder population = new LongAdder();
+        final LongAccumulator maxGeneration =
+                new LongAccumulator(Math::max, 0);
+        final Histogram settled = new Histogram();
+        
+        Totals(){
+            int i;
+            for (i = 0; i < kinds.length; i++)
+                kinds[i] = new LongAdder();
+        }
+    }
+    
+    // Splits a range of soups in half until it is small enough to run.
+    private final class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final long firstSeed;
+        private final long from;
+        private final long to;
+        private final Totals totals;
+        
+        Task(long firstSeed, long from, long to, Totals totals){
+            this.firstSeed = firstSeed;
+            this.from = from;
+            this.to = to;
+            this.totals = totals;
+        }
+        
+        @Override
+        protected void compute(){
+            if (to - from > CHUNK){
+                long middle = (from + to) >>> 1;
+                invokeAll(new Task(firstSeed, from, middle, totals),
+                        new Task(firstSeed, middle, to, totals));
+                return;
+            }
+            Soup soup = spares.poll();
+            if (soup == null)
+                soup = new Soup();
+            long n;
+            for (n = from; n < to; n++)
+                soup.run(firstSeed + n, totals);
+            spares.offer(soup);
+        }
+    }
+    
+    // A board and detector reused from one soup to the next.
+    private final class Soup {
+        final Board board = new Board(size);
+        final CycleDetector detector = new CycleDetector(maxPeriod);
+        
+        Soup(){
+            board.setRule(rule);
+        }
+        
+        void run(long seed, Totals totals){
+            fill(new SplittableRandom(seed));
+            detector.clear();
+            Cycle cycle = detector.add(board);
+            long g;
+            for (g = 0; g < maxGenerations && cycle == null; g++){
+                board.update();
+                cycle = detector.add(board);
+            }
+            totals.population.add(board.getPopulation());
+            if (cycle == null)
+                return;
+            totals.kinds[cycle.getKind().ordinal()].increment();
+            totals.generations.add(cycle.getStart());
+            totals.maxGeneration.accumulate(cycle.getStart());
+            totals.settled.record(cycle.getStart());
+        }
+        
+        // Overwrite every row of the board with a new soup and restart it
+        // at generation 0.
+        private void fill(SplittableRandom random){
+            long[] cells = board.cells();
+            int words = board.words();
+            int i, w, bit;
+            for (i = 0; i < size; i++){
+                int offset = board.rowOffset(i);
+                for (w = 0; w < words; w++){
+                    long word;
+                    if (density == 0.5)
+                        word = random.nextLong();
+                    else {
+                        word = 0;
+                        for (bit = 0; bit < 64; bit++)
+                            if (random.nextDouble() < density)
+                                word |= 1L << bit;
+                    }
+                    cells[offset + w] = word;
+                }
+            }
+            board.replaced(0);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+/**
+ * Game of Life board which stores only its live cells, so memory and the cost
+ * of each generation grow with the population rather than the area. The board
+ * is unbounded: any int row and column may hold a live cell, wrapping around
+ * only at the limits of int.
+ * 
+ * @author Dennis Windsor
+ */
+public class SparseBoard {
+    // Live cells, keyed by row in the high and column in the low 32 bits
+    private LongHashSet live;
+    private LongHashSet next;
+    // Neighbour counts of every cell next to a live cell, as an open
+    // addressing table from cell key to count. Zero marks a free slot, so the
+    // count of cell (0, 0) is kept in zeroCount.
+    private long[] countKeys;
+    private byte[] counts;
+    private int countMask;
+    private int zeroCount;
+    private long generation;
+    private Rule rule = Rule.LIFE;
+    
+    /**
+     * Create a new, empty, unbounded board.
+     */
+    public SparseBoard(){
+        live = new LongHashSet(16);
+        next = new LongHashSet(16);
+        countKeys = new long[64];
+        counts = new byte[64];
+        countMask = 63;
+    }
+    
+    /**
+     * Sets the rule used to compute each following generation. Rules in which
+     * cells with no live neighbours are born would fill the unbounded board,
+     * so are not supported.
+     * 
+     * @param rule  the new rule
+     * @exception IllegalArgumentException if rule is null or contains B0
+     */
+    public void setRule(Rule rule) throws IllegalArgumentException{
+        if (rule == null)
+            throw new IllegalArgumentException("Rule must not be null.");
+        if (rule.isBirth(0))
+            throw new IllegalArgumentException(
+                    "Rules with B0 need a bounded board.");
+        this.rule = rule;
+    }
+    
+    /**
+     * Returns the rule used to compute each generation.
+     * 
+     * @return the board's rule
+     */
+    public Rule getRule(){
+        return rule;
+    }
+    
+    /**
+     * Updates the board by advancing it one generation. Only live cells and
+     * their neighbours are visited.
+     */
+    public void update(){
+        ensureCountCapacity(live.size() * 9);
+        live.forEach(this::countNeighbours);
+        // The next generation is usually about as large as this one, and
+        // sizing to it lets the set shrink again after a population spike
+        next.clear(live.size());
+        // Cells with no live neighbours have no count, so isolated cells
+        // surviving under S0 are found from the live set.
+        if (rule.isSurvival(0))
+            live.forEach(cell -> {
+                if (countOf(cell) == 0)
+                    next.add(cell);
+            });
+        if (live.contains(0) ? rule.isSurvival(zeroCount)
+                : zeroCount > 0 && rule.isBirth(zeroCount))
+            next.add(0);
+        int i;
+        for (i = 0; i < countKeys.length; i++){
+            long key = countKeys[i];
+            if (key != 0){
+                if (live.contains(key) ? rule.isSurvival(counts[i])
+                        : rule.isBirth(counts[i]))
+                    next.add(key);
+                countKeys[i] = 0;
+            }
+        }
+        zeroCount = 0;
+        LongHashSet old = live;
+        live = next;
+        next = old;
+        generation++;
+    }
+    
+    // Add one to the count of each of the eight neighbours of a live cell.
+    private void countNeighbours(long cell){
+        int x = row(cell);
+        int y = column(cell);
+        increment(key(x - 1, y - 1));
+        increment(key(x - 1, y));
+        increment(key(x - 1, y + 1));
+        increment(key(x, y - 1));
+        increment(key(x, y + 1));
+        increment(key(x + 1, y - 1));
+        increment(key(x + 1, y));
+        increment(key(x + 1, y + 1));
+    }
+    
+    private void increment(long key){
+        if (key == 0){
+            zeroCount++;
+            return;
+        }
+        int i = (int) LongHashSet.mix(key) & countMask;
+        while (countKeys[i] != 0 && countKeys[i] != key)
+            i = (i + 1) & countMask;
+        if (countKeys[i] == 0){
+            countKeys[i] = key;
+            counts[i] = 1;
+        }
+        else
+            counts[i]++;
+    }
+    
+    // Neighbour count of a cell, zero if it has no live neighbours.
+    private int countOf(long key){
+        if (key == 0)
+            return zeroCount;
+        int i = (int) LongHashSet.mix(key) & countMask;
+        while (countKeys[i] != 0 && countKeys[i] != key)
+            i = (i + 1) & countMask;
+        return countKeys[i] == 0 ? 0 : counts[i];
+    }
+    
+    // Size the count table to keep it at most half full for the given number
+    // of keys, shrinking it once it is more than four times that size so
+    // scanning it costs no more than the population after a spike. The
+    // table is empty between generations so is simply replaced.
+    private void ensureCountCapacity(int keys){
+        int capacity = 64;
+        while (capacity / 2 < keys)
+            capacity <<= 1;
+        if (capacity > countKeys.length || capacity * 4 <= countKeys.length){
+            countKeys = new long[capacity];
+            counts = new byte[capacity];
+            countMask = capacity - 1;
+        }
+    }
+    
+    /**
+     * Returns the number of live cells on the board.
+     * 
+     * @return the number of live cells
+     */
+    public int getPopulation(){
+        return live.size();
+    }
+    
+    /**
+     * Returns the number of generations the board has been advanced.
+     * 
+     * @return the current generation
+     */
+    public long getGeneration(){
+        return generation;
+    }
+    
+    /**
+     * Returns an array of Strings of the names of all the shapes that can be
+     * added to the board.
+     * 
+     * @return  An array of Strings containing the name of shapes that can be
+     *          added to the board.
+     */
+    public String[] getShapes(){
+        return Shapes.names();
+    }
+    
+    /**
+     * Returns whether the cell at row x, column y is alive.
+     * 
+     * @param x Row of cell
+     * @param y Column of cell
+     * @return true if the cell is alive
+     */
+    public boolean isAlive(int x, int y){
+        return live.contains(key(x, y));
+    }
+    
+    /**
+     * Changes the state of a single cell at row x, column y on the board.
+     * 
+     * @param x Row of cell to be changed
+     * @param y Column of cell to be changed
+     */
+    public void flipCell(int x, int y){
+        long key = key(x, y);
+        if (!live.remove(key))
+            live.add(key);
+    }
+    
+    /**
+     * Add a given shape to the board.
+     * 
+     * @param shape String representation of shape to be added, or the path
+     *              of an RLE, Life 1.06 or plaintext pattern file
+     * @param x     row of upper right corner where shape should be added
+     * @param y     column of upper right corner where shape should be added
+     * @exception IllegalArgumentException if the shape is not known or its
+     *            pattern file cannot be read
+     */
+    public void addShape(String shape, int x, int y)
+            throws IllegalArgumentException{
+        int[] currShape = Shapes.get(shape);
+        int i;
+        for (i = 0; i < currShape.length/2; i++)
+            live.add(key(x + currShape[2*i], y + currShape[2*i+1]));
+    }
+    
+    /**
+     * Calls the visitor with the row and column of every live cell, in no
+     * particular order.
+     * 
+     * @param visitor visitor to be called for each live cell
+     */
+    public void forEachLive(CellVisitor visitor){
+        live.forEach(cell -> visitor.visit(row(cell), column(cell)));
+    }
+    
+    /**
+     * Returns a copy of a rectangular window of the board.
+     * 
+     * @param x     row of the upper corner of the window
+     * @param y     column of the upper corner of the window
+     * @param rows  number of rows in the window
+     * @param cols  number of columns in the window
+     * @return a 2-d boolean array of the cells in the window
+     * @exception IllegalArgumentException if rows or cols is negative
+     */
+    public boolean[][] getBoardState(int x, int y, int rows, int cols)
+            throws IllegalArgumentException{
+        if (rows < 0 || cols < 0)
+            throw new IllegalArgumentException("Size must be positive.");
+        boolean[][] state = new boolean[rows][cols];
+        forEachLive((i, j) -> {
+            long r = (long) i - x;
+            long c = (long) j - y;
+            if (r >= 0 && c >= 0 && r < rows && c < cols)
+                state[(int) r][(int) c] = true;
+        });
+        return state;
+    }
+    
+    private static long key(int x, int y){
+        return (long) x << 32 | (y & 0xFFFFFFFFL);
+    }
+    
+    private static int row(long key){
+        return (int) (key >> 32);
+    }
+    
+    private static int column(long key){
+        return (int) key;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Generation step over rows of packed cells using the JDK Vector API, so
+ * each instruction works on several words of 64 cells at once. Rows use the
+ * same layout as BitRows and results are identical. The
+ * jdk.incubator.vector module must be added to the JVM for this class to
+ * load, so callers check Board.isVectorAvailable() first.
+ *
+ * @author Dennis Windsor
+ */
+final class VectorRows {
+    private static final VectorSpecies<Long> SPECIES =
+            LongVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    private VectorRows(){
+    }
+
+    /**
+     * Returns the number of words computed together in each vector, which
+     * depends on the vector width of the machine.
+     *
+     * @return words per vector
+     */
+    static int lanes(){
+        return LANES;
+    }
+
+    /**
+     * Computes the next generation of one row, skipping runs of words whose
+     * tiles are all inactive and recording which bits of each computed word
+     * changed. Words are computed a vector at a time; inactive tiles that
+     * share a vector with an active one are computed too, which leaves them
+     * as they were since their neighbourhood has not changed. The words left
+     * over after the last whole vector are computed by BitRows.
+     *
+     * @param src       packed source cells
+     * @param above     offset of the ghost word starting the row above
+     * @param row       offset of the ghost word starting the row
+     * @param below     offset of the ghost word starting the row below
+     * @param dst       packed destination cells
+     * @param out       offset of the ghost word starting the destination row
+     * @param words     number of non-ghost words in a row
+     * @param lastMask  mask of the columns in use in the last word of a row
+     * @param rule      rule giving the next state of each cell
+     * @param active    whether each tile needs computing
+     * @param diff      changed bits of each tile, to be added to
+     * @param tile      index of the row's first tile in active and diff
+     */
+    static void step(long[] src, int above, int row, int below, long[] dst,
+            int out, int words, long lastMask, Rule rule, boolean[] active,
+            long[] diff, int tile){
+        boolean life = rule.isLife();
+        int births = rule.births();
+        int survivals = rule.survivals();
+        // Whole vectors that end before the last word, which needs masking
+        int vectorWords = (words - 1) / LANES * LANES;
+        int w, i;
+        for (w = 1; w <= vectorWords; w += LANES){
+            boolean any = false;
+            for (i = 0; i < LANES && !any; i++)
+                any = active[tile + w - 1 + i];
+            if (!any)
+                continue;
+            LongVector a = LongVector.fromArray(SPECIES, src, above + w);
+            LongVector b = LongVector.fromArray(SPECIES, src, row + w);
+            LongVector c = LongVector.fromArray(SPECIES, src, below + w);
+            LongVector aw = west(a, src, above + w);
+            LongVector ae = east(a, src, above + w);
+            LongVector bw = west(b, src, row + w);
+            LongVector be = east(b, src, row + w);
+            LongVector cw = west(c, src, below + w);
+            LongVector ce = east(c, src, below + w);
+            LongVector cells = life ? life(aw, a, ae, bw, b, be, cw, c, ce)
+                    : next(births, survivals, aw, a, ae, bw, b, be, cw, c, ce);
+            cells.intoArray(dst, out + w);
+            LongVector.fromArray(SPECIES, diff, tile + w - 1)
+                    .or(cells.lanewise(VectorOperators.XOR, b))
+                    .intoArray(diff, tile + w - 1);
+        }
+        if (vectorWords < words)
+            BitRows.step(src, above + vectorWords, row + vectorWords,
+                    below + vectorWords, dst, out + vectorWords,
+                    words - vectorWords, lastMask, rule, active, diff,
+                    tile + vectorWords);
+    }
+
+    // Words shifted so each bit holds its western neighbour, carrying the
+    // top bit of the word before.
+    private static LongVector west(LongVector words, long[] src, int at){
+        return words.lanewise(VectorOperators.LSHL, 1)
+                .or(LongVector.fromArray(SPECIES, src, at - 1)
+                        .lanewise(VectorOperators.LSHR, 63));
+    }
+
+    // Words shifted so each bit holds its eastern neighbour, carrying the
+    // bottom bit of the word after.
+    private static LongVector east(LongVector words, long[] src, int at){
+        return words.lanewise(VectorOperators.LSHR, 1)
+                .or(LongVector.fromArray(SPECIES, src, at + 1)
+                        .lanewise(VectorOperators.LSHL, 63));
+    }
+
+    // BitRows.life() a vector of words at a time.
+    private static LongVector life(LongVector aw, LongVector a, LongVector ae,
+            LongVector bw, LongVector b, LongVector be, LongVector cw,
+            LongVector c, LongVector ce){
+        LongVector s1 = aw.lanewise(VectorOperators.XOR, a)
+                .lanewise(VectorOperators.XOR, ae);
+        LongVector t1 = aw.and(a).or(ae.and(aw.lanewise(VectorOperators.XOR,
+                a)));
+        LongVector s3 = cw.lanewise(VectorOperators.XOR, c)
+                .lanewise(VectorOperators.XOR, ce);
+        LongVector t3 = cw.and(c).or(ce.and(cw.lanewise(VectorOperators.XOR,
+                c)));
+        LongVector s2 = bw.lanewise(VectorOperators.XOR, be);
+        LongVector t2 = bw.and(be);
+        LongVector ones = s1.lanewise(VectorOperators.XOR, s2)
+                .lanewise(VectorOperators.XOR, s3);
+        LongVector t4 = s1.and(s2).or(s3.and(s1.lanewise(VectorOperators.XOR,
+                s2)));
+        LongVector x = t1.lanewise(VectorOperators.XOR, t2);
+        LongVector y = t3.lanewise(VectorOperators.XOR, t4);
+        LongVector twos = x.lanewise(VectorOperators.XOR, y)
+                .lanewise(VectorOperators.AND_NOT, t1.and(t2).or(t3.and(t4)));
+        return twos.and(ones.or(b));
+    }
+
+    // BitRows.next() a vector of words at a time.
+    private static LongVector next(int births, int survivals, LongVector aw,
+            LongVector a, LongVector ae, LongVector bw, LongVector b,
+            LongVector be, LongVector cw, LongVector c, LongVector ce){
+        LongVector s1 = aw.lanewise(VectorOperators.XOR, a)
+                .lanewise(VectorOperators.XOR, ae);
+        LongVector t1 = aw.and(a).or(ae.and(aw.lanewise(VectorOperators.XOR,
+                a)));
+        LongVector s3 = cw.lanewise(VectorOperators.XOR, c)
+                .lanewise(VectorOperators.XOR, ce);
+        LongVector t3 = cw.and(c).or(ce.and(cw.lanewise(VectorOperators.XOR,
+                c)));
+        LongVector s2 = bw.lanewise(VectorOperators.XOR, be);
+        LongVector t2 = bw.and(be);
+        LongVector ones = s1.lanewise(VectorOperators.XOR, s2)
+                .lanewise(VectorOperators.XOR, s3);
+        LongVector t4 = s1.and(s2).or(s3.and(s1.lanewise(VectorOperators.XOR,
+                s2)));
+        LongVector x = t1.lanewise(VectorOperators.XOR, t2);
+        LongVector xc = t1.and(t2);
+        LongVector y = t3.lanewise(VectorOperators.XOR, t4);
+        LongVector yc = t3.and(t4);
+        LongVector twos = x.lanewise(VectorOperators.XOR, y);
+        LongVector xy = x.and(y);
+        LongVector fours = xc.lanewise(VectorOperators.XOR, yc)
+                .lanewise(VectorOperators.XOR, xy);
+        LongVector eights = xc.and(yc).or(xy.and(xc.lanewise(
+                VectorOperators.XOR, yc)));
+        LongVector born = LongVector.zero(SPECIES);
+        LongVector kept = LongVector.zero(SPECIES);
+        int n;
+        for (n = 0; n <= 8; n++){
+            int bit = 1 << n;
+            if (((births | survivals) & bit) == 0)
+                continue;
+            LongVector count = ((n & 1) != 0 ? ones : ones.not())
+                    .and((n & 2) != 0 ? twos : twos.not())
+                    .and((n & 4) != 0 ? fours : fours.not())
+                    .and((n & 8) != 0 ? eights : eights.not());
+            if ((births & bit) != 0)
+                born = born.or(count);
+            if ((survivals & bit) != 0)
+                kept = kept.or(count);
+        }
+        return born.lanewise(VectorOperators.AND_NOT, b).or(kept.and(b));
+    }
+}
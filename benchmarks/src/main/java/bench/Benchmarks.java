@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bench;
+
+import java.util.Random;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import Board.Board;
+
+/**
+ * Entry point of the benchmark jar. Runs the selected benchmarks with the GC
+ * profiler, so allocation rates are reported, and writes results as JSON to
+ * jmh-result.json unless other options are given on the command line.
+ * 
+ * @author Dennis Windsor
+ */
+public class Benchmarks {
+    /**
+     * Generations a soup is run before it is restored to its first
+     * generation. Random soups settle into sparse ash within a few thousand
+     * generations, after which skipping stable tiles leaves update() almost
+     * nothing to do whatever the starting density, so soups are only
+     * measured while they are young.
+     */
+    static final int SOUP_GENERATIONS = 128;
+    
+    /**
+     * Runs the benchmarks.
+     * 
+     * @param args JMH command line options
+     * @throws CommandLineOptionException if the options are invalid
+     * @throws RunnerException if a benchmark fails
+     */
+    public static void main(String[] args) throws CommandLineOptionException,
+            RunnerException {
+        CommandLineOptions command = new CommandLineOptions(args);
+        Options options = new OptionsBuilder()
+                .parent(command)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(command.getResultFormat()
+                        .orElse(ResultFormatType.JSON))
+                .result(command.getResult().orElse("jmh-result.json"))
+                .build();
+        new Runner(options).run();
+    }
+    
+    /**
+     * Returns a board filled with a random soup of the given density. The
+     * same size, density and seed always give the same board.
+     * 
+     * @param size      length of one row of the board
+     * @param density   chance of each cell being alive
+     * @param seed      random seed
+     * @return a new board
+     */
+    static Board soup(int size, double density, long seed){
+        Board board = new Board(size);
+        Random random = new Random(seed);
+        int i, j;
+        for (i = 0; i < size; i++)
+            for (j = 0; j < size; j++)
+                if (random.nextDouble() < density)
+                    board.flipCell(i, j);
+        return board;
+    }
+}
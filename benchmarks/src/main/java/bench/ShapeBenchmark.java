@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import Board.Board;
+import Board.HashLife;
+import Board.SparseBoard;
+
+/**
+ * Time per generation of each engine running the standard seeds from the
+ * shape library. Each invocation seeds a fresh board and runs it for the
+ * first thousand generations, long enough for the methuselahs to spread.
+ * 
+ * @author Dennis Windsor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShapeBenchmark {
+    private static final int GENERATIONS = 1000;
+    private static final int SIZE = 1024;
+    
+    @Param({"acorn", "diehard", "r-pentomino", "glider", "LWS", "blinker",
+        "beacon", "toad"})
+    String shape;
+    
+    @Param({"board", "sparse", "hashlife"})
+    String engine;
+    
+    @Setup(Level.Trial)
+    public void setup(){
+        // Fail fast on unknown names
+        new Board(SIZE).addShape(shape, SIZE / 2, SIZE / 2);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(GENERATIONS)
+    public long run(){
+        int i;
+        switch (engine){
+            case "board":
+                Board board = new Board(SIZE);
+                board.addShape(shape, SIZE / 2, SIZE / 2);
+                for (i = 0; i < GENERATIONS; i++)
+                    board.update();
+                return board.getPopulation();
+            case "sparse":
+                SparseBoard sparse = new SparseBoard();
+                sparse.addShape(shape, SIZE / 2, SIZE / 2);
+                for (i = 0; i < GENERATIONS; i++)
+                    sparse.update();
+                return sparse.getPopulation();
+            default:
+                HashLife hashLife = new HashLife(SIZE);
+                hashLife.addShape(shape, SIZE / 2, SIZE / 2);
+                for (i = 0; i < GENERATIONS; i++)
+                    hashLife.update();
+                return hashLife.getPopulation();
+        }
+    }
+}
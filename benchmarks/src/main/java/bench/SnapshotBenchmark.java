@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import Board.Board;
+import Board.BoardSnapshot;
+
+/**
+ * Cost of reading the whole board: copying it with getBoardState(), taking a
+ * reusable packed snapshot, and visiting live cells in place.
+ * 
+ * @author Dennis Windsor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotBenchmark {
+    @Param({"100", "1000", "4000"})
+    int size;
+    
+    @Param({"0.01", "0.5"})
+    double density;
+    
+    Board board;
+    BoardSnapshot snapshot;
+    
+    @Setup(Level.Trial)
+    public void setup(){
+        board = Benchmarks.soup(size, density, 42);
+        snapshot = board.snapshot(null);
+    }
+    
+    @Benchmark
+    public boolean[][] getBoardState(){
+        return board.getBoardState();
+    }
+    
+    @Benchmark
+    public BoardSnapshot snapshot(){
+        return board.snapshot(snapshot);
+    }
+    
+    @Benchmark
+    public void forEachLive(Blackhole blackhole){
+        board.forEachLive((x, y) -> blackhole.consume(x + y));
+    }
+    
+    @Benchmark
+    public long getPopulation(){
+        return board.getPopulation();
+    }
+}
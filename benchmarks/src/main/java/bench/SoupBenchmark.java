@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bench;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import Board.SoupSearch;
+
+/**
+ * Soups per second of SoupSearch on 64 by 64 soups of density one half,
+ * on one worker and on one worker per available processor. Each invocation
+ * searches the next SOUPS seeds, so no soup is run twice.
+ * 
+ * @author Dennis Windsor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SoupBenchmark {
+    private static final int SOUPS = 256;
+    
+    @Param({"serial", "parallel"})
+    String mode;
+    
+    SoupSearch search;
+    ForkJoinPool pool;
+    long seed;
+    
+    @Setup(Level.Trial)
+    public void setup(){
+        search = new SoupSearch(64, 0.5);
+        pool = new ForkJoinPool(mode.equals("parallel")
+                ? Runtime.getRuntime().availableProcessors() : 1);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        pool.shutdown();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SOUPS)
+    public SoupSearch.Result search(){
+        SoupSearch.Result result = search.search(seed, SOUPS, pool);
+        seed += SOUPS;
+        return result;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import Board.Board;
+import Board.BoardSnapshot;
+
+/**
+ * Generation throughput of Board on random soups across board sizes and
+ * densities, serially and with one thread per available processor, stepping
+ * one generation at a time and in temporal blocks of eight. Soups are
+ * restored to their first generation every iteration and after every
+ * Benchmarks.SOUP_GENERATIONS generations, so each density is measured as
+ * written rather than as the ash it settles into.
+ * 
+ * @author Dennis Windsor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpdateBenchmark {
+    @Param({"100", "1000", "4000", "16000"})
+    int size;
+    
+    @Param({"0.01", "0.1", "0.5"})
+    double density;
+    
+    @Param({"serial", "parallel"})
+    String mode;
+    
+    Board board;
+    // The soup at generation 0, restored at the start of every iteration and
+    // whenever the board has run SOUP_GENERATIONS generations
+    BoardSnapshot start;
+    
+    @Setup(Level.Trial)
+    public void setup(){
+        board = Benchmarks.soup(size, density, 42);
+        start = board.snapshot(null);
+        if (mode.equals("parallel"))
+            board.setThreads(Runtime.getRuntime().availableProcessors());
+    }
+    
+    @Setup(Level.Iteration)
+    public void restart(){
+        board.restore(start);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        board.close();
+    }
+    
+    @Benchmark
+    public Board update(){
+        board.update();
+        restartIfSettling();
+        return board;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public Board updateBlocked(){
+        board.update(8);
+        restartIfSettling();
+        return board;
+    }
+    
+    private void restartIfSettling(){
+        if (board.getGeneration() >= Benchmarks.SOUP_GENERATIONS)
+            board.restore(start);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import Board.Board;
+import Board.BoardSnapshot;
+import Board.Rule;
+
+/**
+ * Serial generation time of Board's scalar rows against its Vector API rows
+ * on the same random soups, for Conway's rule and for HighLife, which takes
+ * the general rule path. Forks are started with the Vector API module.
+ * Soups are restored as in UpdateBenchmark, so they never settle.
+ * 
+ * @author Dennis Windsor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class VectorBenchmark {
+    @Param({"1000", "4000", "16000"})
+    int size;
+    
+    @Param({"0.1", "0.5"})
+    double density;
+    
+    @Param({"B3/S23", "B36/S23"})
+    String rule;
+    
+    @Param({"scalar", "vector"})
+    String engine;
+    
+    Board board;
+    // The soup at generation 0, restored at the start of every iteration and
+    // whenever the board has run SOUP_GENERATIONS generations
+    BoardSnapshot start;
+    
+    @Setup(Level.Trial)
+    public void setup(){
+        board = Benchmarks.soup(size, density, 42);
+        start = board.snapshot(null);
+        board.setRule(Rule.parse(rule));
+        board.setVectorised(engine.equals("vector"));
+        if (board.isVectorised() != engine.equals("vector"))
+            throw new IllegalStateException("Vector API is not available.");
+    }
+    
+    @Setup(Level.Iteration)
+    public void restart(){
+        board.restore(start);
+    }
+    
+    @Benchmark
+    public Board update(){
+        board.update();
+        restartIfSettling();
+        return board;
+    }
+    
+    private void restartIfSettling(){
+        if (board.getGeneration() >= Benchmarks.SOUP_GENERATIONS)
+            board.restore(start);
+    }
+}
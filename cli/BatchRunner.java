@@ -0,0 +1,396 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package cli;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import Board.Board;
+import Board.BoardFile;
+import Board.Boundary;
+import Board.CycleDetector;
+import Board.CycleDetector.Cycle;
+import Board.Rule;
+import Board.SimulationMetrics;
+import Board.SoupSearch;
+
+/**
+ * Runs boards without a display, writing per-generation statistics as CSV.
+ * Only the Board package is used, so no JavaFX classes are loaded.
+ * 
+ * Each generation produces a line of run, generation, population, births,
+ * deaths and the nanoseconds the update took. A summary of each run is
+ * written to standard error.
+ * 
+ * @author Dennis Windsor
+ */
+public class BatchRunner {
+    private static final String USAGE = String.join("\n",
+            "Usage: java cli.BatchRunner [options]",
+            "  --size N            length of one row of the board (100)",
+            "  --generations N     generations to run (100)",
+            "  --threads N         threads used per generation (1)",
+            "  --rule RULE         rule in B/S notation (B3/S23, or the rule",
+            "                      of a restored board)",
+            "  --boundary MODE     dead, torus, klein or mirror edges (dead, or",
+            "                      the boundary of a restored board)",
+            "  --shape NAME@X,Y    add a built-in shape, may be repeated",
+            "  --file PATH[@X,Y]   add an RLE, Life 1.06 or plaintext pattern",
+            "                      file, may be repeated",
+            "  --random D          fill the board with density D of live cells",
+            "  --seed S            random seed of the first run (0)",
+            "  --runs N            number of runs, each with the next seed (1)",
+            "  --csv PATH          write statistics to PATH, not standard out",
+            "  --summary           only write the summary of each run",
+            "  --restore PATH      start from a saved board instead of seeding",
+            "  --checkpoint PATH   save the board to PATH after the run",
+            "  --checkpoint-every N  also save every N generations",
+            "  --compress          run-length compress saved boards",
+            "  --metrics NAME      publish statistics over JMX under NAME",
+            "  --stop-on-cycle P   end a run once it dies out, settles or",
+            "                      oscillates with a period of at most P",
+            "  --soups N           instead of runs, run N soups of density",
+            "                      --random from --seed on --threads workers",
+            "                      until each settles, stopping at",
+            "                      --generations, and summarise them",
+            "Shapes: " + String.join(", ", new Board(0).getShapes()));
+    
+    private int size = 100;
+    private long generations = 100;
+    private int threads = 1;
+    private Rule rule;
+    private Boundary boundary;
+    private final List<String> shapes = new ArrayList<>();
+    private final List<String> files = new ArrayList<>();
+    private double density;
+    private long seed;
+    private int runs = 1;
+    private String csv;
+    private boolean summary;
+    private String restore;
+    private String checkpoint;
+    private long checkpointEvery;
+    private boolean compress;
+    private int stopPeriod;
+    private String metricsName;
+    private SimulationMetrics metrics;
+    private long soups;
+    
+    /**
+     * Parses the command line and runs the requested simulations.
+     * 
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        BatchRunner runner;
+        try {
+            runner = parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        try {
+            runner.run();
+        } catch (IndexOutOfBoundsException e) {
+            // A shape or file placed partly off the board
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+    
+    // Build a runner from command line arguments.
+    static BatchRunner parse(String[] args) throws IllegalArgumentException{
+        BatchRunner runner = new BatchRunner();
+        int i;
+        for (i = 0; i < args.length; i++){
+            String option = args[i];
+            if (option.equals("--summary")){
+                runner.summary = true;
+                continue;
+            }
+            if (option.equals("--compress")){
+                runner.compress = true;
+                continue;
+            }
+            if (option.equals("--help"))
+                throw new IllegalArgumentException("");
+            if (i + 1 == args.length)
+                throw new IllegalArgumentException("Missing value for "
+                        + option);
+            String value = args[++i];
+            try {
+                switch (option){
+                    case "--size":
+                        runner.size = Integer.parseInt(value);
+                        break;
+                    case "--generations":
+                        runner.generations = Long.parseLong(value);
+                        break;
+                    case "--threads":
+                        runner.threads = Integer.parseInt(value);
+                        break;
+                    case "--rule":
+                        runner.rule = Rule.parse(value);
+                        break;
+                    case "--boundary":
+                        runner.boundary = boundary(value);
+                        break;
+                    case "--shape":
+                        runner.shapes.add(value);
+                        break;
+                    case "--file":
+                        runner.files.add(value);
+                        break;
+                    case "--random":
+                        runner.density = Double.parseDouble(value);
+                        break;
+                    case "--seed":
+                        runner.seed = Long.parseLong(value);
+                        break;
+                    case "--runs":
+                        runner.runs = Integer.parseInt(value);
+                        break;
+                    case "--csv":
+                        runner.csv = value;
+                        break;
+                    case "--restore":
+                        runner.restore = value;
+                        break;
+                    case "--checkpoint":
+                        runner.checkpoint = value;
+                        break;
+                    case "--checkpoint-every":
+                        runner.checkpointEvery = Long.parseLong(value);
+                        break;
+                    case "--metrics":
+                        runner.metricsName = value;
+                        break;
+                    case "--stop-on-cycle":
+                        runner.stopPeriod = Integer.parseInt(value);
+                        break;
+                    case "--soups":
+                        runner.soups = Long.parseLong(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option "
+                                + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value for "
+                        + option + ": " + value);
+            }
+        }
+        if (runner.size < 0 || runner.generations < 0 || runner.threads < 1
+                || runner.runs < 0 || runner.density < 0 || runner.density > 1
+                || runner.checkpointEvery < 0 || runner.stopPeriod < 0
+                || runner.soups < 0)
+            throw new IllegalArgumentException("Option out of range.");
+        if (runner.checkpointEvery > 0 && runner.checkpoint == null)
+            throw new IllegalArgumentException(
+                    "--checkpoint-every needs --checkpoint.");
+        if (runner.soups > 0 && runner.density == 0)
+            throw new IllegalArgumentException("--soups needs --random.");
+        return runner;
+    }
+    
+    // Parse a boundary mode given in any case.
+    private static Boundary boundary(String value)
+            throws IllegalArgumentException{
+        for (Boundary mode : Boundary.values())
+            if (mode.name().equalsIgnoreCase(value))
+                return mode;
+        throw new IllegalArgumentException("Unknown boundary: " + value);
+    }
+    
+    // Run every simulation, writing statistics as it goes.
+    private void run() throws IOException{
+        if (soups > 0){
+            search();
+            return;
+        }
+        PrintWriter out = csv == null
+                ? new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+                        System.out, StandardCharsets.UTF_8)))
+                : new PrintWriter(Files.newBufferedWriter(Paths.get(csv)));
+        if (metricsName != null){
+            metrics = new SimulationMetrics();
+            metrics.register(metricsName);
+        }
+        try {
+            if (!summary)
+                out.println("run,generation,population,births,deaths,nanos");
+            int r;
+            for (r = 0; r < runs; r++)
+                runOne(r, seed + r, out);
+        } finally {
+            out.close();
+            if (metrics != null)
+                metrics.unregister();
+        }
+    }
+    
+    // Run a soup search on its own pool and write its summary.
+    private void search(){
+        SoupSearch search = new SoupSearch(size, density);
+        if (rule != null)
+            search.setRule(rule);
+        if (stopPeriod > 0)
+            search.setMaxPeriod(stopPeriod);
+        search.setMaxGenerations(generations);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            System.err.println(search.search(seed, soups, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    // Seed or restore and run a single board.
+    private void runOne(int run, long runSeed, PrintWriter out)
+            throws IOException{
+        Board board;
+        if (restore != null)
+            board = BoardFile.load(Paths.get(restore));
+        else {
+            board = new Board(size);
+            seed(board, runSeed);
+        }
+        if (rule != null)
+            board.setRule(rule);
+        if (boundary != null)
+            board.setBoundary(boundary);
+        board.setMetrics(metrics);
+        CycleDetector detector = null;
+        Cycle cycle = null;
+        if (stopPeriod > 0){
+            detector = new CycleDetector(stopPeriod);
+            detector.add(board);
+        }
+        long totalNanos = 0;
+        long g;
+        board.setThreads(threads);
+        try {
+            for (g = 1; g <= generations && cycle == null; g++){
+                long start = System.nanoTime();
+                board.update();
+                long nanos = System.nanoTime() - start;
+                totalNanos += nanos;
+                if (!summary)
+                    out.println(run + "," + board.getGeneration() + ","
+                            + board.getPopulation() + ","
+                            + board.getBirthCount() + ","
+                            + board.getDeathCount() + "," + nanos);
+                if (checkpointEvery > 0 && g % checkpointEvery == 0)
+                    save(board, run);
+                if (detector != null)
+                    cycle = detector.add(board);
+            }
+            if (checkpoint != null)
+                save(board, run);
+        } finally {
+            // Release the board's thread pool before the next run
+            board.close();
+        }
+        out.flush();
+        long steps = g - 1;
+        System.err.printf("run %d: seed %d, generation %d, population %d, "
+                + "%.0f ns/generation%s%n", run, runSeed, board.getGeneration(),
+                board.getPopulation(),
+                steps == 0 ? 0.0 : (double) totalNanos / steps,
+                cycle == null ? "" : ", " + cycle);
+    }
+    
+    // Save a checkpoint of a run, writing a temporary file first so an
+    // interrupted save never replaces the last good checkpoint. When there
+    // are several runs each adds its number to the file name.
+    private void save(Board board, int run) throws IOException{
+        Path path = Paths.get(runs > 1 ? checkpoint + "." + run : checkpoint);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        BoardFile.save(board, temp, compress);
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    // Add the random soup, shapes and pattern files to a new board.
+    private void seed(Board board, long runSeed){
+        if (density > 0){
+            Random random = new Random(runSeed);
+            int i, j;
+            for (i = 0; i < size; i++)
+                for (j = 0; j < size; j++)
+                    if (random.nextDouble() < density)
+                        board.flipCell(i, j);
+        }
+        for (String shape : shapes){
+            int at = shape.lastIndexOf('@');
+            if (at < 0)
+                throw new IllegalArgumentException("Shape needs a position: "
+                        + shape);
+            int[] position = position(shape.substring(at + 1));
+            place(board, "--shape " + shape, shape.substring(0, at),
+                    position);
+        }
+        for (String file : files){
+            int at = file.lastIndexOf('@');
+            int[] position = at < 0 ? new int[2]
+                    : position(file.substring(at + 1));
+            place(board, "--file " + file,
+                    at < 0 ? file : file.substring(0, at), position);
+        }
+    }
+    
+    // Add a shape or pattern file, naming the option that placed it if it
+    // does not fit on the board.
+    private static void place(Board board, String option, String shape,
+            int[] position){
+        try {
+            board.addShape(shape, position[0], position[1]);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IndexOutOfBoundsException(option
+                    + " does not fit on the board. " + e.getMessage());
+        }
+    }
+    
+    // Parse an "x,y" position.
+    private static int[] position(String text){
+        String[] parts = text.split(",");
+        try {
+            if (parts.length == 2)
+                return new int[] {Integer.parseInt(parts[0].trim()),
+                    Integer.parseInt(parts[1].trim())};
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid position: " + text);
+    }
+}
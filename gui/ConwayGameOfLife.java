@@ -18,11 +18,10 @@ package gui;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
+import java.util.function.Consumer;
+import javafx.animation.AnimationTimer;
 import javafx.stage.Stage;
 import javafx.application.Application;
-import javafx.event.ActionEvent;
 import javafx.geometry.Pos;
 import javafx.scene.Group;
 import javafx.scene.Scene;
@@ -31,11 +30,20 @@ import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.Button;
 import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.VBox;
 import javafx.stage.Modality;
-import javafx.util.Duration;
 import Board.Board;
+import Board.BoardSnapshot;
+import Board.Boundary;
+import Board.CellVisitor;
+import Board.History;
+import Board.Rule;
+import Board.SimulationMetrics;
 
 /**
  *
@@ -46,6 +54,18 @@ public class ConwayGameOfLife extends Application {
     static double genSpeed = 0.1;
     static int cSize = 10;
     static Stage window;
+    // Draw frames through a pixel buffer instead of one rectangle per cell
+    static boolean usePixels = false;
+    static PixelRenderer pixelRenderer;
+    // Draw only the visible part of the board in a window that can be
+    // dragged and scrolled, shading zoomed out regions by density
+    static boolean useViewport = false;
+    // Largest width and height of the viewport's window in pixels
+    static final int VIEW_SIZE = 800;
+    // Memory the animation's history of shown generations may take
+    static final long HISTORY_BYTES = 64L << 20;
+    // Generation and frame statistics published over JMX, or null when off
+    static SimulationMetrics metrics;
 
     /**
      * Starts game with default 100 by 100 size board.
@@ -62,16 +82,20 @@ public class ConwayGameOfLife extends Application {
         window = primaryStage;
         window.setTitle("Conway's Game of Life: Menu");
         int width = 400;
-        int height = 235;
+        int height = 375;
         ArrayList<Button> buttons = new ArrayList<>();
         
         // Setup all buttons
         createNewBoard(buttons);
         setSize(buttons);
         setSpeed(buttons);
+        setRule(buttons);
+        setBoundary(buttons);
         addToBoard(buttons);
         flipCell(buttons);
         showState(buttons);
+        setRenderer(buttons);
+        setMetrics(buttons);
         startGame(buttons);
 
         VBox layout = new VBox();
@@ -94,7 +118,12 @@ public class ConwayGameOfLife extends Application {
             Object size = GetInputWindow.getInt("Set Size of New Board",
                     "Enter new board size:");
             if (size != null){
+                Rule rule = board.getRule();
+                Boundary boundary = board.getBoundary();
                 board = new Board((int) size);
+                board.setRule(rule);
+                board.setBoundary(boundary);
+                board.setMetrics(metrics);
             }
         });
     }
@@ -125,6 +154,33 @@ public class ConwayGameOfLife extends Application {
         });
     }
     
+    // Setup button to change the rule of the game
+    private static void setRule(ArrayList<Button> buttons){
+        Button setRule = new Button("Set Rule: " + board.getRule());
+        buttons.add(setRule);
+        setRule.setOnAction(e->{
+            Rule rule = GetInputWindow.getRule("Change Rule of Game",
+                    "Enter rule, e.g. B3/S23 or B36/S23:");
+            if (rule != null){
+                board.setRule(rule);
+                setRule.setText("Set Rule: " + rule);
+            }
+        });
+    }
+    
+    // Setup button to cycle through the ways the edges of the board behave
+    private static void setBoundary(ArrayList<Button> buttons){
+        Button setBoundary = new Button("Edges: " + board.getBoundary());
+        buttons.add(setBoundary);
+        setBoundary.setOnAction(e->{
+            Boundary[] modes = Boundary.values();
+            Boundary mode = modes[(board.getBoundary().ordinal() + 1)
+                    % modes.length];
+            board.setBoundary(mode);
+            setBoundary.setText("Edges: " + mode);
+        });
+    }
+    
     // Setup button to add shape to board
     private static void addToBoard(ArrayList<Button> buttons){
         Button addShape = new Button("Add Shape");
@@ -146,6 +202,43 @@ public class ConwayGameOfLife extends Application {
         checkState.setOnAction(e->drawBoard());
     }
         
+    // Setup button to cycle between rectangle, pixel buffer and viewport
+    // drawing
+    private static void setRenderer(ArrayList<Button> buttons){
+        Button renderer = new Button("Renderer: Rectangles");
+        buttons.add(renderer);
+        renderer.setOnAction(e->{
+            if (useViewport){
+                useViewport = false;
+                usePixels = false;
+            }
+            else if (usePixels)
+                useViewport = true;
+            else
+                usePixels = true;
+            renderer.setText(useViewport ? "Renderer: Viewport"
+                    : usePixels ? "Renderer: Pixels" : "Renderer: Rectangles");
+        });
+    }
+    
+    // Setup button to publish generation and frame statistics over JMX
+    private static void setMetrics(ArrayList<Button> buttons){
+        Button toggle = new Button("Metrics: Off");
+        buttons.add(toggle);
+        toggle.setOnAction(e->{
+            if (metrics == null){
+                metrics = new SimulationMetrics();
+                metrics.register("gui");
+            }
+            else {
+                metrics.unregister();
+                metrics = null;
+            }
+            board.setMetrics(metrics);
+            toggle.setText(metrics == null ? "Metrics: Off" : "Metrics: On");
+        });
+    }
+    
     // Setup button to start game animation
     private static void startGame(ArrayList<Button> buttons){
         Button startAnimation = new Button("Start Game of Life");
@@ -161,6 +254,13 @@ public class ConwayGameOfLife extends Application {
         
         int size = board.getSize();
 
+        if (drawsViewport(size)){
+            Viewport viewport = viewport(size);
+            viewport.update(board.snapshot(null));
+            viewportSetup(stage, root, viewport).run();
+            stage.show();
+            return;
+        }
         GraphicsContext gc = boardSetup(stage, root, size);
         
         fillCells(gc, size);
@@ -170,40 +270,174 @@ public class ConwayGameOfLife extends Application {
     
     // Fill in live cells on the board
     private static void fillCells(GraphicsContext gc, int size){
-        boolean[][] currBoard = board.getBoardState();
+        fillCells(gc, size, board::forEachLive);
+    }
+    
+    // Draw every cell given by a live cell iterator
+    private static void fillCells(GraphicsContext gc, int size,
+            Consumer<CellVisitor> cells){
+        if (usePixels){
+            PixelRenderer renderer = pixelRenderer(size);
+            renderer.clear();
+            cells.accept((i, j) -> renderer.fillCell(i, j, true));
+            renderer.push(gc);
+            return;
+        }
         gc.clearRect(0, 0, size*cSize, size*cSize);
-        int i;
-        int j;
-        for (i = 0; i < size; i++)
-            for (j=0; j < size; j++)
-                if (currBoard[i][j])
-                    gc.fillRect(i*cSize, j*cSize, cSize, cSize);
+        cells.accept((i, j) ->
+                gc.fillRect(i*cSize, j*cSize, cSize, cSize));
+    }
+    
+    // Whether boards of the given size are drawn through a viewport, either
+    // because it was chosen or because the board is too large for a pixel
+    // buffer at the current cell size
+    private static boolean drawsViewport(int size){
+        return useViewport
+                || (usePixels && !PixelRenderer.canDraw(size, cSize));
+    }
+    
+    // Return a pixel renderer for the current board and cell size
+    private static PixelRenderer pixelRenderer(int size){
+        if (pixelRenderer == null || !pixelRenderer.fits(size, cSize))
+            pixelRenderer = new PixelRenderer(size, cSize);
+        return pixelRenderer;
     }
     
-    // Create animation for Game of Life
+    // Draw the cells that changed between the frame on screen and the next
+    // one, or the whole board when most cells have changed.
+    private static void drawFrame(GraphicsContext gc, int size,
+            BoardSnapshot drawn, BoardSnapshot next){
+        if (next.getChangeCount(drawn) * 2 > (long) size * size){
+            fillCells(gc, size, next::forEachLive);
+        }
+        else if (usePixels){
+            PixelRenderer renderer = pixelRenderer(size);
+            next.forEachChange(drawn,
+                    (i, j) -> renderer.fillCell(i, j, true),
+                    (i, j) -> renderer.fillCell(i, j, false));
+            renderer.push(gc);
+        }
+        else
+            next.forEachChange(drawn,
+                    (i, j) -> gc.fillRect(i*cSize, j*cSize, cSize, cSize),
+                    (i, j) -> gc.clearRect(i*cSize, j*cSize, cSize, cSize));
+    }
+    
+    // Create animation for Game of Life. The board is updated on its own
+    // thread while frames are drawn at display rate from the latest finished
+    // generation, and the title shows generations and frames per second.
+    // Space pauses and resumes, the left and right arrow keys step back and
+    // forward, and the slider scrubs through the generations shown so far.
     private static void animateBoard(){
         Stage stage = new Stage();
         Group root = new Group();
         stage.setTitle("Game of Life");
         int size = board.getSize();
         
-        Timeline gameLoop = new Timeline();
-        gameLoop.setCycleCount( Timeline.INDEFINITE );
+        Viewport viewport;
+        Runnable redraw;
+        GraphicsContext gc;
+        double width;
+        if (drawsViewport(size)){
+            viewport = viewport(size);
+            redraw = viewportSetup(stage, root, viewport);
+            gc = null;
+            width = viewport.getWidth();
+        }
+        else {
+            viewport = null;
+            redraw = null;
+            gc = boardSetup(stage, root, size);
+            width = size*cSize;
+        }
         
-        final long timeStart = System.currentTimeMillis();
+        Playback playback = new Playback(board, (long) (genSpeed * 1e9),
+                HISTORY_BYTES, (drawn, next) -> {
+                    SimulationMetrics frameMetrics = metrics;
+                    long start = frameMetrics == null ? 0 : System.nanoTime();
+                    if (viewport != null){
+                        viewport.update(next);
+                        redraw.run();
+                    }
+                    else
+                        drawFrame(gc, size, drawn, next);
+                    if (frameMetrics != null)
+                        frameMetrics.recordFrame(System.nanoTime() - start);
+                });
+        BoardSnapshot first = playback.getShown();
+        if (viewport != null){
+            viewport.update(first);
+            redraw.run();
+        }
+        else
+            fillCells(gc, size, first::forEachLive);
         
-        GraphicsContext gc = boardSetup(stage, root, size);
-
-        KeyFrame kf = new KeyFrame(
-            Duration.seconds(genSpeed), (ActionEvent ae) -> {
-                fillCells(gc, size);
-                board.update();
-            });
-        gameLoop.getKeyFrames().add( kf );
-        gameLoop.play();
+        Slider scrub = new Slider();
+        scrub.setLayoutY(width);
+        scrub.setPrefWidth(Math.max(width, 200));
+        scrub.setFocusTraversable(false);
+        root.getChildren().add(scrub);
+        // Set while the render loop moves the slider, so only moves made by
+        // the user seek
+        boolean[] moving = new boolean[1];
+        scrub.valueProperty().addListener((value, was, now) -> {
+            if (!moving[0])
+                playback.seek(Math.round(now.doubleValue()));
+        });
+        stage.getScene().addEventFilter(KeyEvent.KEY_PRESSED, e->{
+            if (e.getCode() == KeyCode.SPACE)
+                playback.togglePause();
+            else if (e.getCode() == KeyCode.LEFT)
+                playback.stepBack();
+            else if (e.getCode() == KeyCode.RIGHT)
+                playback.stepForward();
+            else
+                return;
+            e.consume();
+        });
+        
+        AnimationTimer renderLoop = new AnimationTimer() {
+            long statsTime = System.nanoTime();
+            long statsGeneration = playback.getGeneration();
+            long statsShown = playback.getShownCount();
+            
+            @Override
+            public void handle(long now){
+                playback.poll();
+                History history = playback.getHistory();
+                moving[0] = true;
+                scrub.setMin(history.getOldestGeneration());
+                scrub.setMax(history.getNewestGeneration());
+                scrub.setValue(playback.getShown().getGeneration());
+                moving[0] = false;
+                if (playback.isPaused()){
+                    stage.setTitle(String.format("Game of Life - paused at "
+                            + "generation %d", playback.getShown()
+                            .getGeneration()));
+                    statsTime = now;
+                    statsGeneration = playback.getGeneration();
+                    statsShown = playback.getShownCount();
+                }
+                else if (now - statsTime >= 1_000_000_000L){
+                    long generation = playback.getGeneration();
+                    long shown = playback.getShownCount();
+                    double seconds = (now - statsTime) / 1e9;
+                    stage.setTitle(String.format(
+                            "Game of Life - %.0f gen/s, %.0f fps",
+                            (generation - statsGeneration) / seconds,
+                            (shown - statsShown) / seconds));
+                    statsTime = now;
+                    statsGeneration = generation;
+                    statsShown = shown;
+                }
+            }
+        };
+        playback.resume();
+        renderLoop.start();
         
         stage.setOnCloseRequest(e->{
-            gameLoop.stop();
+            renderLoop.stop();
+            playback.pause();
         });
         stage.show();
     }
@@ -222,6 +456,47 @@ public class ConwayGameOfLife extends Application {
         return gc;
     }
     
+    // Create a viewport for the current board and cell size, with a window
+    // no larger than the board drawn at that cell size.
+    private static Viewport viewport(int size){
+        int view = (int) Math.max(1, Math.min((long) size * cSize, VIEW_SIZE));
+        return new Viewport(size, view, view, cSize);
+    }
+    
+    // Viewport drawing setup. Dragging pans the board and scrolling zooms
+    // around the pointer; the returned action redraws the window.
+    private static Runnable viewportSetup(Stage stage, Group root,
+            Viewport viewport){
+        Scene scene = new Scene(root);
+        
+        stage.initModality(Modality.APPLICATION_MODAL);
+        stage.setScene(scene);
+        
+        Canvas canvas = new Canvas(viewport.getWidth(), viewport.getHeight());
+        root.getChildren().add(canvas);
+        
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        Runnable redraw = () -> viewport.draw(gc);
+        double[] pointer = new double[2];
+        canvas.setOnMousePressed(e->{
+            pointer[0] = e.getX();
+            pointer[1] = e.getY();
+        });
+        canvas.setOnMouseDragged(e->{
+            viewport.pan(e.getX() - pointer[0], e.getY() - pointer[1]);
+            pointer[0] = e.getX();
+            pointer[1] = e.getY();
+            redraw.run();
+        });
+        canvas.setOnScroll(e->{
+            if (e.getDeltaY() != 0){
+                viewport.zoom(e.getDeltaY() > 0 ? 1 : -1, e.getX(), e.getY());
+                redraw.run();
+            }
+        });
+        return redraw;
+    }
+    
     // Helper to add shape
     private static void addShapes(){
         Stage stage = new Stage();
@@ -230,6 +505,20 @@ public class ConwayGameOfLife extends Application {
         
         int size = board.getSize();
 
+        if (drawsViewport(size)){
+            Viewport viewport = viewport(size);
+            viewport.update(board.snapshot(null));
+            viewportSetup(stage, root, viewport).run();
+            stage.show();
+            root.setOnMouseClicked(e->{
+                int[] cell = clickedCell(viewport, e);
+                if (cell == null)
+                    return;
+                placeShape(cell[0], cell[1]);
+                stage.close();
+            });
+            return;
+        }
         GraphicsContext gc = boardSetup(stage, root, size);
         
         fillCells(gc, size);
@@ -291,6 +580,23 @@ public class ConwayGameOfLife extends Application {
         
         int size = board.getSize();
 
+        if (drawsViewport(size)){
+            Viewport viewport = viewport(size);
+            BoardSnapshot shown = board.snapshot(null);
+            viewport.update(shown);
+            Runnable redraw = viewportSetup(stage, root, viewport);
+            redraw.run();
+            root.setOnMouseClicked(e->{
+                int[] cell = clickedCell(viewport, e);
+                if (cell == null)
+                    return;
+                board.flipCell(cell[0], cell[1]);
+                viewport.update(board.snapshot(shown));
+                redraw.run();
+            });
+            stage.show();
+            return;
+        }
         GraphicsContext gc = boardSetup(stage, root, size);
         
         fillCells(gc, size);
@@ -304,4 +610,12 @@ public class ConwayGameOfLife extends Application {
         
         stage.show();
     }
+    
+    // Cell of the board clicked in a viewport's window, or null if the
+    // pointer was dragged to pan or the click missed the board
+    private static int[] clickedCell(Viewport viewport, MouseEvent e){
+        if (!e.isStillSincePress())
+            return null;
+        return viewport.cellAt(e.getSceneX(), e.getSceneY());
+    }
 }
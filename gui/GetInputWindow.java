@@ -25,6 +25,7 @@ import javafx.scene.control.TextField;
 import javafx.scene.layout.GridPane;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
+import Board.Rule;
 
 /**
  * Class to create a window to get an input value.
@@ -95,6 +96,70 @@ public class GetInputWindow {
         return returnValue;
     }
     
+     /**
+      * Displays a window to get a rule in B/S notation, such as B3/S23, with a
+      * given title and prompt.
+      * 
+      * @param title    The desired title of the window
+      * @param message  The input prompt to be displayed
+      * @return Either the rule entered, or null if the cancel button is
+      *         pressed
+      */
+    public static Rule getRule(String title, String message){
+        Stage window = new Stage();
+        window.setTitle(title);
+        window.initModality(Modality.APPLICATION_MODAL);
+        
+        ArrayList<Node> elements = new ArrayList<>();
+        
+        GridPane grid = new GridPane();
+        int height = 60;
+        int width = 450;
+        Label label = new Label(message);
+        GridPane.setConstraints(label, 0, 0);
+        elements.add(label);
+        TextField value = new TextField();
+        GridPane.setConstraints(value, 1, 0);
+        elements.add(value);
+        Button confirm = new Button("Confirm");
+        confirm.setOnAction(e -> {
+            if (isRule(value.getText())){
+                window.close();
+            }else{
+                ErrorBox.display("Error", "That is not a valid rule.");
+            }
+        });
+        confirm.setPrefWidth(width/2);
+        elements.add(confirm);
+        GridPane.setConstraints(confirm, 0, 1);
+        Button cancel = new Button("Cancel"); 
+        cancel.setPrefWidth(width/2);
+        cancel.setOnAction(e -> {
+            returnValue = null;
+            window.close();
+        });
+        elements.add(cancel);
+        GridPane.setConstraints(cancel, 1, 1);
+        
+        grid.getChildren().addAll(elements);
+        
+        Scene scene = new Scene(grid, width, height);
+        window.setScene(scene);
+        window.showAndWait();
+        
+        return (Rule) returnValue;
+    }
+    
+    // Check value given is a rule.
+    private static boolean isRule(String value){
+        try{
+            returnValue = Rule.parse(value);
+            return true;
+        }catch(IllegalArgumentException e){
+            return false;
+        }
+    }
+    
     // Check value given is an integer.
     private static boolean isInt(String value){
         try{
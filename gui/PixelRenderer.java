@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2017 Dennis
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package gui;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritablePixelFormat;
+
+/**
+ * Draws a board by building the whole frame in an ARGB pixel buffer and
+ * writing it to the canvas in a single call, rather than issuing one
+ * fillRect per live cell. The buffer keeps the last frame, so a frame can be
+ * drawn by changing only the cells that differ from it.
+ *
+ * @author Dennis Windsor
+ */
+class PixelRenderer {
+    private static final int LIVE = 0xFF000000;
+    private static final int DEAD = 0xFFFFFFFF;
+    private static final WritablePixelFormat<IntBuffer> FORMAT =
+            PixelFormat.getIntArgbPreInstance();
+    // Widest frame drawn as one image. A frame is a single canvas texture,
+    // and wider ones exceed what graphics cards accept long before the
+    // pixels stop fitting in an int array, so larger boards are drawn
+    // through a viewport instead.
+    private static final int MAX_WIDTH = 8192;
+    
+    private final int size;
+    private final int cellSize;
+    private final int width;
+    private final int[] pixels;
+    
+    /**
+     * Create a renderer for a board of the given size drawn with square
+     * cells cellSize pixels wide.
+     * 
+     * @param size      length of one row of the board
+     * @param cellSize  width of a cell in pixels, at least one
+     * @exception IllegalArgumentException if the frame would be too large to
+     *                                     draw as one image
+     */
+    PixelRenderer(int size, int cellSize) throws IllegalArgumentException{
+        if (!canDraw(size, cellSize))
+            throw new IllegalArgumentException(
+                    "Board is too large to draw as pixels.");
+        this.size = size;
+        this.cellSize = cellSize;
+        this.width = size * cellSize;
+        this.pixels = new int[width * width];
+    }
+    
+    /**
+     * Returns whether a board of the given size drawn at the given cell size
+     * fits in a frame of at most 8192 pixels a side.
+     * 
+     * @param size      length of one row of the board
+     * @param cellSize  width of a cell in pixels
+     * @return true if a renderer can be created for these dimensions
+     */
+    static boolean canDraw(int size, int cellSize){
+        return (long) size * cellSize <= MAX_WIDTH;
+    }
+    
+    /**
+     * Returns whether this renderer draws boards of the given size at the
+     * given cell size.
+     * 
+     * @param size      length of one row of the board
+     * @param cellSize  width of a cell in pixels
+     * @return true if the renderer can be reused for these dimensions
+     */
+    boolean fits(int size, int cellSize){
+        return this.size == size && this.cellSize == cellSize;
+    }
+    
+    /**
+     * Marks every cell of the frame as dead.
+     */
+    void clear(){
+        Arrays.fill(pixels, DEAD);
+    }
+    
+    /**
+     * Sets the colour of one cell of the frame.
+     * 
+     * @param i     row of the cell
+     * @param j     column of the cell
+     * @param alive whether the cell is alive
+     */
+    void fillCell(int i, int j, boolean alive){
+        fillCell(i, j, alive ? LIVE : DEAD);
+    }
+    
+    /**
+     * Writes the whole frame to the canvas.
+     * 
+     * @param gc    graphics context of the canvas to draw on
+     */
+    void push(GraphicsContext gc){
+        gc.getPixelWriter().setPixels(0, 0, width, width, FORMAT, pixels, 0,
+                width);
+    }
+    
+    // Colour the pixels of one cell. Rows of the board run across the
+    // canvas, matching the rectangle renderer.
+    private void fillCell(int i, int j, int colour){
+        int start = j * cellSize * width + i * cellSize;
+        int k;
+        if (cellSize == 1){
+            pixels[start] = colour;
+            return;
+        }
+        for (k = 0; k < cellSize; k++, start += width)
+            Arrays.fill(pixels, start, start + cellSize, colour);
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2017 Dennis
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package gui;
+
+import java.util.function.BiConsumer;
+import Board.Board;
+import Board.BoardSnapshot;
+import Board.History;
+
+/**
+ * Plays a board forwards on a simulation thread and lets the display pause
+ * it, step back and forth, and scrub through the generations it has shown.
+ * 
+ * Every generation shown is recorded in a history. Moving back pauses the
+ * simulation and shows generations rebuilt from the history; resuming puts
+ * the board back to the generation on screen and runs on from there, which
+ * replaces the history after it. Generations the simulation finished
+ * between two frames were never shown, so are not recorded either. All
+ * methods must be called on the display thread.
+ * 
+ * @author Dennis Windsor
+ */
+class Playback {
+    private final Board board;
+    private final long generationNanos;
+    private final History history;
+    // Called with the snapshot on screen and the one to show instead
+    private final BiConsumer<BoardSnapshot, BoardSnapshot> show;
+    // Running simulation, or null while paused
+    private Simulation simulation;
+    private BoardSnapshot shown;
+    private BoardSnapshot spare;
+    private long shownCount;
+    
+    /**
+     * Create a paused playback of the given board, showing its current
+     * generation. The board must not be used elsewhere while the playback
+     * is running.
+     * 
+     * @param board             board to play
+     * @param generationNanos   target length of a generation in nanoseconds,
+     *                          or zero to run flat out
+     * @param historyBytes      memory the history of shown generations may
+     *                          take
+     * @param show              draws a change from the first snapshot to the
+     *                          second
+     */
+    Playback(Board board, long generationNanos, long historyBytes,
+            BiConsumer<BoardSnapshot, BoardSnapshot> show){
+        this.board = board;
+        this.generationNanos = generationNanos;
+        this.history = new History(board.getSize(), historyBytes);
+        this.show = show;
+        shown = board.snapshot(null);
+        spare = board.snapshot(null);
+        history.record(shown);
+    }
+    
+    /**
+     * Returns the snapshot on screen.
+     * 
+     * @return the generation last shown
+     */
+    BoardSnapshot getShown(){
+        return shown;
+    }
+    
+    /**
+     * Returns the number of snapshots shown so far.
+     * 
+     * @return snapshots passed to the show callback
+     */
+    long getShownCount(){
+        return shownCount;
+    }
+    
+    /**
+     * Returns the generation the board has reached, which may be ahead of
+     * the one on screen.
+     * 
+     * @return latest generation computed
+     */
+    long getGeneration(){
+        return simulation == null ? shown.getGeneration()
+                : simulation.getGeneration();
+    }
+    
+    History getHistory(){
+        return history;
+    }
+    
+    boolean isPaused(){
+        return simulation == null;
+    }
+    
+    /**
+     * Shows the latest generation from the simulation if it is newer than
+     * the one on screen. Called once per frame.
+     */
+    void poll(){
+        if (simulation == null)
+            return;
+        BoardSnapshot next = simulation.take(spare, shown.getGeneration());
+        if (next == spare)
+            return;
+        if (next.getGeneration() > shown.getGeneration()){
+            history.record(next);
+            display(next);
+        }
+        else
+            spare = next;
+    }
+    
+    /**
+     * Runs the board on from the generation on screen.
+     */
+    void resume(){
+        if (simulation != null)
+            return;
+        if (board.getGeneration() != shown.getGeneration())
+            board.restore(shown);
+        simulation = new Simulation(board, generationNanos);
+        simulation.start();
+    }
+    
+    /**
+     * Stops the simulation, keeping the generation on screen.
+     */
+    void pause(){
+        if (simulation == null)
+            return;
+        simulation.stop();
+        simulation = null;
+    }
+    
+    void togglePause(){
+        if (simulation == null)
+            resume();
+        else
+            pause();
+    }
+    
+    /**
+     * Pauses and shows the stored generation before the one on screen, if
+     * there is one.
+     */
+    void stepBack(){
+        pause();
+        seekTo(history.seek(shown.getGeneration() - 1, spare));
+    }
+    
+    /**
+     * Pauses and shows the stored generation after the one on screen, or
+     * computes the next generation if the newest is on screen.
+     */
+    void stepForward(){
+        pause();
+        long next = history.getNextGeneration(shown.getGeneration());
+        if (next >= 0){
+            seekTo(history.seek(next, spare));
+            return;
+        }
+        if (board.getGeneration() != shown.getGeneration())
+            board.restore(shown);
+        board.update();
+        BoardSnapshot snapshot = board.snapshot(spare);
+        history.record(snapshot);
+        display(snapshot);
+    }
+    
+    /**
+     * Pauses and shows the newest stored generation no later than the one
+     * given.
+     * 
+     * @param generation    generation to show
+     */
+    void seek(long generation){
+        pause();
+        seekTo(history.seek(generation, spare));
+    }
+    
+    // Show a snapshot rebuilt from the history, unless it is already shown.
+    private void seekTo(BoardSnapshot next){
+        if (next == null)
+            return;
+        if (next.getGeneration() == shown.getGeneration())
+            spare = next;
+        else
+            display(next);
+    }
+    
+    private void display(BoardSnapshot next){
+        show.accept(shown, next);
+        spare = shown;
+        shown = next;
+        shownCount++;
+    }
+}
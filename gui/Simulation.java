@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2017 Dennis
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package gui;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import Board.Board;
+import Board.BoardSnapshot;
+
+/**
+ * Runs a board on its own thread, publishing each finished generation for
+ * the display to pick up at its own rate.
+ * 
+ * Generations are handed over through a single slot holding the latest
+ * snapshot. The worker swaps each new snapshot into the slot and reuses
+ * whatever it gets back; the display swaps in a snapshot it has finished
+ * with whenever the slot holds a newer generation than it last drew. Neither
+ * side ever waits for the other, and generations finished between two
+ * frames are simply dropped.
+ * 
+ * @author Dennis Windsor
+ */
+class Simulation implements Runnable {
+    private final Board board;
+    private final AtomicReference<BoardSnapshot> latest;
+    private final Thread thread;
+    // Target length of a generation; zero runs as fast as possible
+    private final long generationNanos;
+    private volatile boolean running;
+    
+    /**
+     * Create a simulation of the given board. The board must not be used
+     * elsewhere until the simulation has been stopped.
+     * 
+     * @param board             board to update
+     * @param generationNanos   target length of a generation in nanoseconds,
+     *                          or zero to run flat out
+     */
+    Simulation(Board board, long generationNanos){
+        this.board = board;
+        this.generationNanos = generationNanos;
+        this.latest = new AtomicReference<>(board.snapshot(null));
+        this.thread = new Thread(this, "Game of Life simulation");
+        thread.setDaemon(true);
+    }
+    
+    /**
+     * Starts updating the board.
+     */
+    void start(){
+        running = true;
+        thread.start();
+    }
+    
+    /**
+     * Stops updating the board and waits for the current generation to
+     * finish.
+     */
+    void stop(){
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    @Override
+    public void run(){
+        BoardSnapshot back = null;
+        long deadline = System.nanoTime();
+        while (running){
+            board.update();
+            back = latest.getAndSet(board.snapshot(back));
+            if (generationNanos > 0){
+                deadline += generationNanos;
+                long wait = deadline - System.nanoTime();
+                if (wait > 0)
+                    LockSupport.parkNanos(wait);
+                else
+                    deadline = System.nanoTime();
+            }
+        }
+    }
+    
+    /**
+     * Returns the latest published generation if it is newer than the given
+     * one, handing the spare snapshot back to the simulation in exchange.
+     * Otherwise the spare snapshot is returned unchanged. If the simulation
+     * swaps snapshots at the same moment the exchange can return an older
+     * snapshot, so callers should check the generation of what they get.
+     * 
+     * @param spare         snapshot the caller no longer needs
+     * @param generation    last generation the caller has seen
+     * @return a newer snapshot, or spare if there is none
+     */
+    BoardSnapshot take(BoardSnapshot spare, long generation){
+        if (latest.get().getGeneration() <= generation)
+            return spare;
+        return latest.getAndSet(spare);
+    }
+    
+    /**
+     * Returns the number of generations computed so far.
+     * 
+     * @return the board's current generation
+     */
+    long getGeneration(){
+        return latest.get().getGeneration();
+    }
+}
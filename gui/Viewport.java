@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2017 Dennis
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package gui;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritablePixelFormat;
+import Board.BoardSnapshot;
+import Board.DensityPyramid;
+
+/**
+ * Draws the visible part of a board into a fixed size window that can be
+ * panned and zoomed in powers of two. Zoomed in, each cell is a square of
+ * pixels; zoomed out, each pixel is a square block of cells shaded by how
+ * many of them are alive, read from a density pyramid in a single lookup,
+ * or for blocks narrower than a tile counted from at most 32 rows of the
+ * snapshot shown. Drawing a frame therefore costs a bounded amount of work
+ * per pixel on screen, however large the board is.
+ * 
+ * @author Dennis Windsor
+ */
+class Viewport {
+    private static final int LIVE = 0xFF000000;
+    private static final int DEAD = 0xFFFFFFFF;
+    private static final int OUTSIDE = 0xFFC0C0C0;
+    // Lightest grey used for a block with any live cells
+    private static final int FAINTEST = 0xBF;
+    private static final WritablePixelFormat<IntBuffer> FORMAT =
+            PixelFormat.getIntArgbPreInstance();
+    // Widest a cell is drawn, as a power of two pixels
+    private static final int MAX_ZOOM = 5;
+    
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+    private final DensityPyramid pyramid;
+    // Cells are 1 << zoom pixels wide, or pixels 1 << -zoom cells wide when
+    // zoom is negative
+    private int zoom;
+    // Position of the top left of the window, in pixels at the current zoom
+    private double left;
+    private double top;
+    
+    /**
+     * Create a viewport onto boards of the given size, starting at the
+     * largest zoom that draws cells no wider than cellSize and fits the
+     * whole board in the window, if there is one.
+     * 
+     * @param size      length of one row of the board
+     * @param width     width of the window in pixels, at least one
+     * @param height    height of the window in pixels, at least one
+     * @param cellSize  preferred width of a cell in pixels
+     */
+    Viewport(int size, int width, int height, int cellSize){
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[width * height];
+        this.pyramid = new DensityPyramid(size);
+        zoom = Math.min(MAX_ZOOM,
+                31 - Integer.numberOfLeadingZeros(Math.max(1, cellSize)));
+        while (zoom > -pyramid.getMaxShift()
+                && (extent() > width || extent() > height))
+            zoom--;
+        clamp();
+    }
+    
+    int getWidth(){
+        return width;
+    }
+    
+    int getHeight(){
+        return height;
+    }
+    
+    /**
+     * Brings the viewport up to date with a new generation. Only the tiles
+     * of the board that changed since the last snapshot are counted again.
+     * The snapshot is read when drawing, so must not be changed until the
+     * next update.
+     * 
+     * @param snapshot  snapshot of the board to show
+     */
+    void update(BoardSnapshot snapshot){
+        pyramid.update(snapshot);
+    }
+    
+    /**
+     * Moves the board within the window.
+     * 
+     * @param dx    pixels to move the board right
+     * @param dy    pixels to move the board down
+     */
+    void pan(double dx, double dy){
+        left -= dx;
+        top -= dy;
+        clamp();
+    }
+    
+    /**
+     * Zooms in or out by powers of two, keeping the point under the given
+     * pixel of the window in place.
+     * 
+     * @param steps doublings of the width of a cell, negative to zoom out
+     * @param x     column of the window to zoom around
+     * @param y     row of the window to zoom around
+     */
+    void zoom(int steps, double x, double y){
+        int to = Math.max(-pyramid.getMaxShift(),
+                Math.min(MAX_ZOOM, zoom + steps));
+        double scale = Math.scalb(1.0, to - zoom);
+        left = (left + x) * scale - x;
+        top = (top + y) * scale - y;
+        zoom = to;
+        clamp();
+    }
+    
+    /**
+     * Returns the cell of the board under a pixel of the window. Zoomed out,
+     * this is the first cell of the block of cells the pixel shades.
+     * 
+     * @param x column of the window
+     * @param y row of the window
+     * @return row and column of the cell, or null if the pixel is outside
+     *         the board
+     */
+    int[] cellAt(double x, double y){
+        long row = cell(left + x);
+        long column = cell(top + y);
+        int size = pyramid.getSize();
+        if (row < 0 || column < 0 || row >= size || column >= size)
+            return null;
+        return new int[] {(int) row, (int) column};
+    }
+    
+    /**
+     * Draws the visible part of the board to the canvas.
+     * 
+     * @param gc    graphics context of the canvas to draw on
+     */
+    void draw(GraphicsContext gc){
+        int shift = Math.max(0, -zoom);
+        int unit = 1 << Math.max(0, zoom);
+        int side = pyramid.getSide(shift);
+        long area = 1L << 2 * shift;
+        long originX = (long) Math.floor(left);
+        long originY = (long) Math.floor(top);
+        int px, py;
+        // Walk the window a block at a time, clipping blocks at its edges.
+        // Rows of the board run across the window, as in the other renderers.
+        for (py = 0; py < height; ){
+            long wy = originY + py;
+            long by = Math.floorDiv(wy, unit);
+            int rows = (int) Math.min(height - py, (by + 1) * unit - wy);
+            for (px = 0; px < width; ){
+                long wx = originX + px;
+                long bx = Math.floorDiv(wx, unit);
+                int columns = (int) Math.min(width - px, (bx + 1) * unit - wx);
+                int colour = bx < 0 || by < 0 || bx >= side || by >= side
+                        ? OUTSIDE
+                        : shade(pyramid.getCount(shift, (int) bx, (int) by),
+                                area);
+                fill(px, py, columns, rows, colour);
+                px += columns;
+            }
+            py += rows;
+        }
+        gc.getPixelWriter().setPixels(0, 0, width, height, FORMAT, pixels, 0,
+                width);
+    }
+    
+    // Colour of a block of area cells with count of them alive, darker the
+    // more are alive. Any live cell keeps a block visibly grey.
+    private static int shade(long count, long area){
+        if (count == 0)
+            return DEAD;
+        if (count >= area)
+            return LIVE;
+        int grey = (int) (FAINTEST - FAINTEST * count / area);
+        return LIVE | grey << 16 | grey << 8 | grey;
+    }
+    
+    private void fill(int x, int y, int columns, int rows, int colour){
+        int start = y * width + x;
+        int k;
+        for (k = 0; k < rows; k++, start += width)
+            Arrays.fill(pixels, start, start + columns, colour);
+    }
+    
+    // First cell under a pixel position at the current zoom.
+    private long cell(double position){
+        long pixel = (long) Math.floor(position);
+        return zoom >= 0 ? pixel >> zoom : pixel << -zoom;
+    }
+    
+    // Width of the board in pixels at the current zoom.
+    private long extent(){
+        int size = pyramid.getSize();
+        return zoom >= 0 ? (long) size << zoom : pyramid.getSide(-zoom);
+    }
+    
+    // Keep as much of the board in the window as fits, centring it along
+    // any side it does not fill.
+    private void clamp(){
+        long extent = extent();
+        left = clamp(left, extent, width);
+        top = clamp(top, extent, height);
+    }
+    
+    private static double clamp(double position, long extent, int window){
+        if (extent <= window)
+            return (extent - window) / 2;
+        return Math.max(0, Math.min(extent - window, position));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks update(int) at the edges of its temporal blocking that the
+ * equivalence test does not reach: counts either side of the 64 generation
+ * chunk, the widest halo on a board of several blocks, and the paths that
+ * fall back to repeated update() calls. After each call the board must
+ * match one stepped a generation at a time, including its counts, hash and
+ * population index, and both must agree again one generation later.
+ * 
+ * @author Dennis Windsor
+ */
+class BlockedUpdateTest {
+    // Longest run of generations stepped in one pass over the blocks
+    private static final int CHUNK = 64;
+    
+    @Test
+    void countsAroundChunkMatchSerial(){
+        int[] counts = {0, 1, 2, CHUNK - 1, CHUNK, CHUNK + 1, CHUNK + 2,
+            2 * CHUNK, 2 * CHUNK + 1, 2 * CHUNK + 2};
+        for (int k : counts)
+            check(300, Boundary.DEAD, k, 1);
+    }
+    
+    @Test
+    void widestHaloMatchesSerial(){
+        // Several blocks across and down, each stepped a full chunk
+        check(2100, Boundary.DEAD, CHUNK + 1, 1);
+        check(2100, Boundary.DEAD, CHUNK + 1, 3);
+    }
+    
+    @Test
+    void otherBoundariesMatchSerial(){
+        for (Boundary boundary : Boundary.values())
+            if (boundary != Boundary.DEAD)
+                check(130, boundary, CHUNK + 1, 1);
+    }
+    
+    @Test
+    void metricsRecordEveryGeneration(){
+        Board serial = Boards.random(130, 0.35, 5);
+        Board board = Boards.random(130, 0.35, 5);
+        SimulationMetrics metrics = new SimulationMetrics();
+        board.setMetrics(metrics);
+        board.update(CHUNK + 6);
+        int g;
+        for (g = 0; g < CHUNK + 6; g++)
+            serial.update();
+        Boards.assertSameCells(serial, board, "with metrics");
+        assertEquals(CHUNK + 6, metrics.getGenerationCount());
+        assertEquals(CHUNK + 6, metrics.getGeneration());
+        assertEquals(serial.getPopulation(), metrics.getPopulation());
+        assertEquals(serial.getBirthCount(), metrics.getBirths());
+        assertEquals(serial.getDeathCount(), metrics.getDeaths());
+    }
+    
+    @Test
+    void emptyBoardCountsGenerations(){
+        Board board = new Board(0);
+        board.update(CHUNK + 1);
+        assertEquals(CHUNK + 1, board.getGeneration());
+    }
+    
+    @Test
+    void rejectsNegativeCount(){
+        Board board = new Board(8);
+        assertThrows(IllegalArgumentException.class, () -> board.update(-1));
+    }
+    
+    private static void check(int size, Boundary boundary, int k,
+            int threads){
+        String message = "size " + size + ", " + boundary + ", " + k
+                + " generations, " + threads + " threads";
+        long seed = size * 131L + k;
+        Board serial = Boards.random(size, 0.3, seed);
+        Board board = Boards.random(size, 0.3, seed);
+        serial.setBoundary(boundary);
+        board.setBoundary(boundary);
+        board.setThreads(threads);
+        try {
+            // Start hashing and the population index before stepping
+            assertEquals(serial.getHash(), board.getHash(), message);
+            assertEquals(serial.getPopulation(), board.getPopulation(),
+                    message);
+            board.update(k);
+            int g;
+            for (g = 0; g < k; g++)
+                serial.update();
+            compare(serial, board, message);
+            serial.update();
+            board.update();
+            compare(serial, board, message + ", then one more");
+        } finally {
+            board.close();
+        }
+    }
+    
+    private static void compare(Board serial, Board board, String message){
+        Boards.assertSameCells(serial, board, message);
+        assertEquals(serial.getBirthCount(), board.getBirthCount(), message);
+        assertEquals(serial.getDeathCount(), board.getDeathCount(), message);
+        assertEquals(serial.getHash(), board.getHash(), message);
+        assertEquals(serial.getPopulation(), board.getPopulation(), message);
+        int size = serial.getSize();
+        assertEquals(serial.getPopulation(1, 7, size / 2, size - 9),
+                board.getPopulation(1, 7, size / 2, size - 9), message);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import static Board.Boards.assertCells;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the packed engine against NaiveLife, which follows the rules one
+ * cell at a time on a plain grid, so a fault shared by every packed
+ * configuration of Board cannot go unseen.
+ * 
+ * @author Dennis Windsor
+ */
+class BoardReferenceTest {
+    // Rows of one word, filling a word exactly, and spilling into another
+    private static final int[] SIZES = {1, 2, 3, 5, 63, 64, 65, 130};
+    private static final int GENERATIONS = 40;
+    
+    @Test
+    void conwayMatchesReference(){
+        for (int size : SIZES)
+            for (Boundary boundary : Boundary.values())
+                check(size, Rule.LIFE, NaiveLife.CONWAY, boundary);
+    }
+    
+    @Test
+    void otherRulesMatchReference(){
+        for (int size : SIZES)
+            for (Rule rule : Boards.RULES)
+                for (Boundary boundary : Boundary.values())
+                    check(size, rule, NaiveLife.of(rule), boundary);
+    }
+    
+    private static void check(int size, Rule rule, NaiveLife.CellRule reference,
+            Boundary boundary){
+        boolean[][] cells = NaiveLife.random(size, 0.4, size * 7L + 1);
+        Board board = NaiveLife.toBoard(cells);
+        board.setRule(rule);
+        board.setBoundary(boundary);
+        int g;
+        for (g = 1; g <= GENERATIONS; g++){
+            cells = NaiveLife.step(cells, reference, boundary);
+            board.update();
+            assertCells(cells, board, "size " + size + ", " + rule + ", "
+                    + boundary + ", generation " + g);
+        }
+    }
+}
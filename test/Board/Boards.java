@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.SplittableRandom;
+
+/**
+ * Helpers shared by the board tests: random soups and cell by cell
+ * comparison of boards.
+ * 
+ * @author Dennis Windsor
+ */
+final class Boards {
+    // Rules the equivalence tests run under, including one with B0 so that
+    // empty space beyond a dead boundary is not empty a generation later
+    static final Rule[] RULES = {
+        Rule.LIFE, Rule.HIGHLIFE, Rule.DAY_AND_NIGHT, Rule.SEEDS,
+        Rule.parse("B0123478/S34678")
+    };
+    
+    private Boards(){
+    }
+    
+    /**
+     * Create a board with each cell alive at random with the given chance.
+     * 
+     * @param size      length of one row of the board
+     * @param density   chance of each cell starting alive
+     * @param seed      seed of the random soup
+     * @return the new board
+     */
+    static Board random(int size, double density, long seed){
+        Board board = new Board(size);
+        SplittableRandom random = new SplittableRandom(seed);
+        int x, y;
+        for (x = 0; x < size; x++)
+            for (y = 0; y < size; y++)
+                if (random.nextDouble() < density)
+                    board.flipCell(x, y);
+        return board;
+    }
+    
+    /**
+     * Checks two boards are at the same generation with the same cells.
+     * 
+     * @param expected  board holding the expected cells
+     * @param actual    board under test
+     * @param message   description of the case being checked
+     */
+    static void assertSameCells(Board expected, Board actual, String message){
+        assertEquals(expected.getGeneration(), actual.getGeneration(),
+                message);
+        assertCells(expected.getBoardState(), actual, message);
+    }
+    
+    /**
+     * Checks a board holds the given cells.
+     * 
+     * @param expected  expected cells, indexed by row then column
+     * @param actual    board under test
+     * @param message   description of the case being checked
+     */
+    static void assertCells(boolean[][] expected, Board actual,
+            String message){
+        assertEquals(expected.length, actual.getSize(), message);
+        boolean[][] got = actual.getBoardState();
+        int x;
+        for (x = 0; x < expected.length; x++)
+            assertArrayEquals(expected[x], got[x], message + ", row " + x);
+    }
+}
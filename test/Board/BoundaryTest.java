@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import static Board.Boards.assertCells;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks each boundary mode directly, with gliders sent across every edge
+ * and the cells they should arrive at worked out by hand rather than by
+ * another engine. A glider is the same shape moved one cell diagonally
+ * every four generations, so on a torus it must reappear shifted and
+ * wrapped, and on a Klein bottle wrapped with its columns reversed each
+ * time it crosses the top or bottom. A mirror reflects a pattern on the
+ * edge into the cells beyond it, so the expected cells are those of the
+ * pattern and its reflections stepped on a larger dead board.
+ * 
+ * @author Dennis Windsor
+ */
+class BoundaryTest {
+    private static final int SIZE = 12;
+    // Cells of a glider moving towards higher rows and columns
+    private static final int[][] GLIDER = {{0, 1}, {1, 2}, {2, 0}, {2, 1},
+        {2, 2}};
+    // Row and column directions of the four gliders
+    private static final int[][] DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1},
+        {-1, -1}};
+    
+    @Test
+    void torusWrapsGliders(){
+        for (int[] direction : DIRECTIONS)
+            checkGlider(Boundary.TORUS, direction);
+    }
+    
+    @Test
+    void kleinWrapsGlidersReversingRows(){
+        for (int[] direction : DIRECTIONS)
+            checkGlider(Boundary.KLEIN, direction);
+    }
+    
+    @Test
+    void mirrorReflectsGliders(){
+        for (int[] direction : DIRECTIONS)
+            checkMirror(direction);
+    }
+    
+    @Test
+    void mirrorKeepsEdgePatterns(){
+        // A corner cell and its three reflections form a block
+        boolean[][] corners = new boolean[SIZE][SIZE];
+        corners[0][0] = true;
+        corners[0][SIZE - 1] = true;
+        corners[SIZE - 1][0] = true;
+        corners[SIZE - 1][SIZE - 1] = true;
+        checkStill(corners, corners, "corner cells");
+        // A row of three on an edge and its reflection form a two by three
+        // rectangle, which becomes a beehive split by the edge
+        boolean[][] rows = new boolean[SIZE][SIZE];
+        boolean[][] hives = new boolean[SIZE][SIZE];
+        int i;
+        for (i = 4; i <= 6; i++){
+            rows[0][i] = rows[SIZE - 1][i] = true;
+            rows[i][0] = rows[i][SIZE - 1] = true;
+        }
+        hives[0][4] = hives[0][6] = hives[1][5] = true;
+        hives[SIZE - 1][4] = hives[SIZE - 1][6] = hives[SIZE - 2][5] = true;
+        hives[4][0] = hives[6][0] = hives[5][1] = true;
+        hives[4][SIZE - 1] = hives[6][SIZE - 1] = hives[5][SIZE - 2] = true;
+        checkStill(rows, hives, "edge rows");
+    }
+    
+    // Send a glider round the board until it returns, checking it every
+    // four generations against its start shifted along its path.
+    private static void checkGlider(Boundary boundary, int[] direction){
+        Board board = new Board(SIZE);
+        board.setBoundary(boundary);
+        for (int[] cell : glider(direction))
+            board.flipCell(5 + cell[0], 5 + cell[1]);
+        String message = boundary + ", glider moving " + direction[0] + ", "
+                + direction[1];
+        int k;
+        for (k = 1; k <= SIZE * 2; k++){
+            board.update(4);
+            boolean[][] expected = new boolean[SIZE][SIZE];
+            for (int[] cell : glider(direction)){
+                int[] at = wrap(boundary, 5 + cell[0] + direction[0] * k,
+                        5 + cell[1] + direction[1] * k);
+                expected[at[0]][at[1]] = true;
+            }
+            assertCells(expected, board, message + ", generation " + 4 * k);
+        }
+    }
+    
+    // Map a cell of the unbounded plane onto a torus or Klein bottle.
+    private static int[] wrap(Boundary boundary, int x, int y){
+        int turns = Math.floorDiv(x, SIZE);
+        x -= turns * SIZE;
+        // Each crossing of the top or bottom of a Klein bottle reverses
+        // the columns
+        if (boundary == Boundary.KLEIN && (turns & 1) != 0)
+            y = SIZE - 1 - y;
+        return new int[] {x, Math.floorMod(y, SIZE)};
+    }
+    
+    // Send a glider into the corner it heads for on a mirrored board,
+    // checking every generation against the glider and its reflections in
+    // each edge and corner stepped on a dead board three times as wide.
+    // Nothing from the dead edges can reach the middle in fewer than SIZE
+    // generations.
+    private static void checkMirror(int[] direction){
+        Board board = new Board(SIZE);
+        board.setBoundary(Boundary.MIRROR);
+        boolean[][] cells = new boolean[SIZE][SIZE];
+        int row = direction[0] > 0 ? SIZE - 5 : 2;
+        int column = direction[1] > 0 ? SIZE - 5 : 2;
+        for (int[] cell : glider(direction)){
+            cells[row + cell[0]][column + cell[1]] = true;
+            board.flipCell(row + cell[0], column + cell[1]);
+        }
+        boolean[][] images = reflect(cells);
+        String message = "mirror, glider moving " + direction[0] + ", "
+                + direction[1];
+        int g;
+        for (g = 1; g < SIZE; g++){
+            images = NaiveLife.step(images, NaiveLife.CONWAY, Boundary.DEAD);
+            board.update();
+            assertCells(middle(images), board, message + ", generation " + g);
+        }
+    }
+    
+    // Check a mirrored board starting from cells reaches the expected
+    // cells after one generation and keeps them.
+    private static void checkStill(boolean[][] cells, boolean[][] expected,
+            String message){
+        Board board = NaiveLife.toBoard(cells);
+        board.setBoundary(Boundary.MIRROR);
+        int g;
+        for (g = 1; g <= 4; g++){
+            board.update();
+            assertCells(expected, board, message + ", generation " + g);
+        }
+    }
+    
+    // Cells of a glider moving in the given direction, reflecting the
+    // glider that moves towards higher rows and columns.
+    private static int[][] glider(int[] direction){
+        int[][] cells = new int[GLIDER.length][];
+        int i;
+        for (i = 0; i < GLIDER.length; i++)
+            cells[i] = new int[] {
+                direction[0] > 0 ? GLIDER[i][0] : 2 - GLIDER[i][0],
+                direction[1] > 0 ? GLIDER[i][1] : 2 - GLIDER[i][1]};
+        return cells;
+    }
+    
+    // Surround cells with their reflections in each edge and corner.
+    private static boolean[][] reflect(boolean[][] cells){
+        boolean[][] images = new boolean[3 * SIZE][3 * SIZE];
+        int i, j, x, y;
+        for (i = 0; i < 3; i++)
+            for (j = 0; j < 3; j++)
+                for (x = 0; x < SIZE; x++)
+                    for (y = 0; y < SIZE; y++)
+                        images[i * SIZE + (i == 1 ? x : SIZE - 1 - x)]
+                                [j * SIZE + (j == 1 ? y : SIZE - 1 - y)] =
+                                cells[x][y];
+        return images;
+    }
+    
+    // The middle SIZE by SIZE cells of a reflected grid.
+    private static boolean[][] middle(boolean[][] images){
+        boolean[][] cells = new boolean[SIZE][SIZE];
+        int x;
+        for (x = 0; x < SIZE; x++)
+            System.arraycopy(images[SIZE + x], SIZE, cells[x], 0, SIZE);
+        return cells;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import Board.CycleDetector.Cycle;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks CycleDetector finds the extinctions, still lifes and oscillators
+ * of real boards, misses periods longer than it looks for, and forgets
+ * everything on clear(). A long run of hashes drawn from a small set checks
+ * the ring buffer and its index against a search of the last maxPeriod
+ * hashes.
+ * 
+ * @author Dennis Windsor
+ */
+class CycleDetectorTest {
+    
+    @Test
+    void blockIsStillLife(){
+        Cycle cycle = run("block", 8, 5);
+        assertEquals(CycleDetector.Kind.STILL_LIFE, cycle.getKind());
+        assertEquals(1, cycle.getPeriod());
+        assertEquals(0, cycle.getStart());
+    }
+    
+    @Test
+    void blinkerIsOscillator(){
+        Cycle cycle = run("blinker", 8, 5);
+        assertEquals(CycleDetector.Kind.OSCILLATOR, cycle.getKind());
+        assertEquals(2, cycle.getPeriod());
+        assertEquals(0, cycle.getStart());
+    }
+    
+    @Test
+    void dyingPatternIsExtinction(){
+        Board board = new Board(8);
+        board.flipCell(3, 3);
+        board.flipCell(3, 4);
+        CycleDetector detector = new CycleDetector(8);
+        assertNull(detector.add(board));
+        board.update();
+        // The first empty generation is only seen once
+        assertNull(detector.add(board));
+        board.update();
+        Cycle cycle = detector.add(board);
+        assertNotNull(cycle);
+        assertEquals(CycleDetector.Kind.EXTINCTION, cycle.getKind());
+        assertEquals(1, cycle.getPeriod());
+        assertEquals(1, cycle.getStart());
+    }
+    
+    @Test
+    void longerPeriodIsNotFound(){
+        Board board = new Board(8);
+        board.addShape("blinker", 2, 2);
+        CycleDetector detector = new CycleDetector(1);
+        int g;
+        for (g = 0; g < 20; g++){
+            assertNull(detector.add(board), "generation " + g);
+            board.update();
+        }
+        assertNull(detector.getCycle());
+    }
+    
+    @Test
+    void clearForgetsHistory(){
+        CycleDetector detector = new CycleDetector(4);
+        assertNull(detector.add(0, 11));
+        assertNull(detector.add(1, 12));
+        Cycle cycle = detector.add(2, 11);
+        assertNotNull(cycle);
+        // Later generations return the same cycle
+        assertSame(cycle, detector.add(3, 12));
+        detector.clear();
+        assertNull(detector.getCycle());
+        // Any generation may follow a clear, and hashes seen before it are
+        // new again
+        assertNull(detector.add(10, 12));
+        assertNull(detector.add(11, 11));
+        cycle = detector.add(12, 12);
+        assertEquals(CycleDetector.Kind.OSCILLATOR, cycle.getKind());
+        assertEquals(2, cycle.getPeriod());
+        assertEquals(10, cycle.getStart());
+    }
+    
+    @Test
+    void rejectsSkippedGeneration(){
+        CycleDetector detector = new CycleDetector(4);
+        detector.add(5, 1);
+        assertThrows(IllegalArgumentException.class,
+                () -> detector.add(7, 2));
+    }
+    
+    @Test
+    void matchesSearchOfHistory(){
+        int maxPeriod = 16;
+        CycleDetector detector = new CycleDetector(maxPeriod);
+        SplittableRandom random = new SplittableRandom(3);
+        long[] hashes = new long[100000];
+        int from = 0;
+        int found = 0;
+        int g;
+        for (g = 0; g < hashes.length; g++){
+            // Enough distinct hashes that most runs outlast the period, so
+            // old hashes are forgotten, and few enough that repeats within
+            // and just beyond it are common
+            hashes[g] = 1 + random.nextInt(600);
+            Cycle cycle = detector.add(g, hashes[g]);
+            int period = 0;
+            int back;
+            for (back = 1; back <= maxPeriod && g - back >= from; back++)
+                if (hashes[g - back] == hashes[g]){
+                    period = back;
+                    break;
+                }
+            if (period == 0){
+                assertNull(cycle, "generation " + g);
+                continue;
+            }
+            assertNotNull(cycle, "generation " + g);
+            assertEquals(period, cycle.getPeriod(), "generation " + g);
+            assertEquals(g - period, cycle.getStart(), "generation " + g);
+            found++;
+            detector.clear();
+            from = g + 1;
+        }
+        assertTrue(found > 1000, "cycles found: " + found);
+    }
+    
+    // Add generations of a shape until a cycle is found.
+    private static Cycle run(String shape, int maxPeriod, int generations){
+        Board board = new Board(8);
+        board.addShape(shape, 2, 2);
+        CycleDetector detector = new CycleDetector(maxPeriod);
+        Cycle cycle = detector.add(board);
+        int g;
+        for (g = 0; g < generations && cycle == null; g++){
+            board.update();
+            cycle = detector.add(board);
+        }
+        assertNotNull(cycle, shape);
+        return cycle;
+    }
+}
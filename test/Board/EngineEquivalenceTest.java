@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Checks that every other way of running a board evolves it exactly as
+ * serial calls to Board.update() do: row bands on several threads, temporal
+ * blocks, Vector API rows and worker processes. Each variant runs the same
+ * random soups under every test rule and boundary. Edge cases particular to
+ * one variant are tested beside it.
+ * 
+ * @author Dennis Windsor
+ */
+class EngineEquivalenceTest {
+    private static final int GENERATIONS = 40;
+    // Generations advanced between comparisons, in one call for BLOCKED
+    private static final int RUN = 10;
+    
+    /** Ways of running a board that must match serial updates. */
+    enum Variant {
+        PARALLEL(1, 63, 64, 65, 130, 300, 1100),
+        BLOCKED(1, 64, 65, 300, 2100),
+        VECTOR(1, 63, 64, 65, 130, 300, 1100),
+        SHARDED(130);
+        
+        private final int[] sizes;
+        
+        Variant(int... sizes){
+            this.sizes = sizes;
+        }
+    }
+    
+    // A board run one way, seen only through its cells.
+    private interface Engine extends AutoCloseable {
+        void advance(int generations) throws IOException;
+        
+        boolean[][] cells() throws IOException;
+        
+        @Override
+        void close();
+    }
+    
+    static List<Arguments> cases(){
+        List<Arguments> cases = new ArrayList<>();
+        for (Variant variant : Variant.values())
+            for (int size : variant.sizes)
+                for (Rule rule : Boards.RULES)
+                    for (Boundary boundary : Boundary.values())
+                        cases.add(Arguments.of(variant, size, rule, boundary));
+        return cases;
+    }
+    
+    @ParameterizedTest(name = "{0}, size {1}, {2}, {3}")
+    @MethodSource("cases")
+    void matchesSerialUpdates(Variant variant, int size, Rule rule,
+            Boundary boundary) throws IOException{
+        long seed = size * 31L + variant.ordinal();
+        Board serial = Boards.random(size, 0.4, seed);
+        serial.setRule(rule);
+        serial.setBoundary(boundary);
+        try (Engine engine = start(variant, serial)) {
+            int g;
+            for (g = RUN; g <= GENERATIONS; g += RUN){
+                int i;
+                for (i = 0; i < RUN; i++)
+                    serial.update();
+                engine.advance(RUN);
+                boolean[][] want = serial.getBoardState();
+                boolean[][] got = engine.cells();
+                int x;
+                for (x = 0; x < size; x++)
+                    assertArrayEquals(want[x], got[x], "generation " + g
+                            + ", row " + x);
+            }
+        }
+    }
+    
+    // Start the variant from a copy of the serial board's cells, rule and
+    // boundary.
+    private static Engine start(Variant variant, Board serial)
+            throws IOException{
+        if (variant == Variant.SHARDED)
+            return sharded(serial);
+        Board board = new Board(serial.getSize());
+        serial.forEachLive(board::flipCell);
+        board.setRule(serial.getRule());
+        board.setBoundary(serial.getBoundary());
+        if (variant == Variant.PARALLEL)
+            board.setThreads(3);
+        if (variant == Variant.VECTOR){
+            assertTrue(Board.isVectorAvailable(),
+                    "Run with --add-modules jdk.incubator.vector");
+            board.setVectorised(true);
+        }
+        return new Engine() {
+            @Override
+            public void advance(int generations){
+                if (variant == Variant.BLOCKED)
+                    board.update(generations);
+                else {
+                    int i;
+                    for (i = 0; i < generations; i++)
+                        board.update();
+                }
+            }
+            
+            @Override
+            public boolean[][] cells(){
+                return board.getBoardState();
+            }
+            
+            @Override
+            public void close(){
+                board.close();
+            }
+        };
+    }
+    
+    private static Engine sharded(Board serial) throws IOException{
+        int size = serial.getSize();
+        ShardedBoard board = new ShardedBoard(size, 3);
+        try {
+            board.setRule(serial.getRule());
+            board.setBoundary(serial.getBoundary());
+            boolean[][] cells = serial.getBoardState();
+            int x, y;
+            for (x = 0; x < size; x++)
+                for (y = 0; y < size; y++)
+                    if (cells[x][y])
+                        board.flipCell(x, y);
+        } catch (IOException | RuntimeException e) {
+            board.close();
+            throw e;
+        }
+        return new Engine() {
+            @Override
+            public void advance(int generations) throws IOException{
+                int i;
+                for (i = 0; i < generations; i++)
+                    board.update();
+            }
+            
+            @Override
+            public boolean[][] cells() throws IOException{
+                boolean[][] cells = new boolean[size][size];
+                board.forEachLive((x, y) -> cells[x][y] = true);
+                return cells;
+            }
+            
+            @Override
+            public void close(){
+                board.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import static Board.Boards.assertCells;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks HashLife against Board for a few hundred generations, advancing in
+ * steps of several sizes so that power of two steps and their cached
+ * results are used. Each pattern starts in the middle of a board large
+ * enough that nothing reaches Board's dead edges, where the two would
+ * differ. Every pattern is also run with a small node limit, so nodes are
+ * evicted between most steps and cached results are carried across
+ * evictions or dropped once they exceed the limit themselves.
+ * 
+ * @author Dennis Windsor
+ */
+class HashLifeTest {
+    private static final int SIZE = 400;
+    private static final int GENERATIONS = 300;
+    // Generations advanced by each call, used in turn
+    private static final int[] STEPS = {1, 2, 3, 5, 8, 13};
+    // Node limits: the default, one small enough to evict often, and one
+    // that even the cached results exceed
+    private static final int[] LIMITS = {1 << 22, 2000, 1};
+    
+    @Test
+    void gliderMatchesBoard(){
+        Board board = new Board(SIZE);
+        board.addShape("glider", SIZE / 2, SIZE / 2);
+        check(board, "glider");
+    }
+    
+    @Test
+    void rPentominoMatchesBoard(){
+        Board board = new Board(SIZE);
+        board.addShape("r-pentomino", SIZE / 2, SIZE / 2);
+        check(board, "r-pentomino");
+    }
+    
+    @Test
+    void soupMatchesBoard(){
+        // A 32 by 32 soup in the middle; spaceships leaving it move at most
+        // half a cell a generation, so stay on the board
+        Board soup = Boards.random(32, 0.4, 42);
+        Board board = new Board(SIZE);
+        int offset = SIZE / 2 - 16;
+        soup.forEachLive((x, y) -> board.flipCell(x + offset, y + offset));
+        check(board, "soup");
+    }
+    
+    private static void check(Board start, String name){
+        for (int limit : LIMITS){
+            String message = name + ", limit " + limit;
+            Board board = copy(start);
+            HashLife life = new HashLife(SIZE, limit);
+            start.forEachLive(life::flipCell);
+            assertCells(life.getBoardState(), board, message);
+            int i = 0;
+            while (board.getGeneration() < GENERATIONS){
+                int step = STEPS[i++ % STEPS.length];
+                life.advance(step);
+                int g;
+                for (g = 0; g < step; g++)
+                    board.update();
+                String at = message + ", generation " + board.getGeneration();
+                assertEquals(board.getGeneration(), life.getGeneration(), at);
+                assertEquals(board.getPopulation(), life.getPopulation(), at);
+                assertCells(life.getBoardState(), board, at);
+            }
+        }
+    }
+    
+    private static Board copy(Board board){
+        Board copy = new Board(board.getSize());
+        board.forEachLive(copy::flipCell);
+        return copy;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Records generations of a random board into a History and seeks back to
+ * them forwards, backwards, across keyframes and in random order, checking
+ * every snapshot rebuilt against the same generation of a board stepped
+ * separately from the same seed. Also checks seeks once the oldest
+ * segments have been dropped to keep within the budget, seeks between
+ * recorded generations, and recording again after a rewind.
+ * 
+ * @author Dennis Windsor
+ */
+class HistoryTest {
+    private static final int SIZE = 130;
+    private static final int GENERATIONS = 100;
+    // Frames per segment in History, each segment starting with a keyframe
+    private static final int KEYFRAME_INTERVAL = 32;
+    private static final long SEED = 9;
+    
+    @Test
+    void seeksMatchSteppedBoard(){
+        List<boolean[][]> expected = states(GENERATIONS);
+        History history = record(Long.MAX_VALUE, 1);
+        assertEquals(GENERATIONS + 1, history.getFrameCount());
+        assertEquals(0, history.getOldestGeneration());
+        assertEquals(GENERATIONS, history.getNewestGeneration());
+        BoardSnapshot reuse = null;
+        int g;
+        for (g = 0; g <= GENERATIONS; g++)
+            reuse = check(history, g, g, expected, reuse, "forward");
+        for (g = GENERATIONS; g >= 0; g--)
+            reuse = check(history, g, g, expected, reuse, "backward");
+        // Either side of each keyframe, alternating between segments
+        for (g = KEYFRAME_INTERVAL; g <= GENERATIONS; g += KEYFRAME_INTERVAL){
+            reuse = check(history, g - 1, g - 1, expected, reuse, "keyframe");
+            reuse = check(history, g, g, expected, reuse, "keyframe");
+            reuse = check(history, g - 1, g - 1, expected, reuse, "keyframe");
+            reuse = check(history, g + 1, g + 1, expected, reuse, "keyframe");
+        }
+        SplittableRandom random = new SplittableRandom(SEED);
+        int i;
+        for (i = 0; i < 200; i++){
+            g = random.nextInt(GENERATIONS + 1);
+            reuse = check(history, g, g, expected, reuse, "random");
+        }
+        // Later than the newest gives the newest
+        check(history, GENERATIONS + 5, GENERATIONS, expected, null, "after");
+    }
+    
+    @Test
+    void seeksBetweenRecordedGenerations(){
+        List<boolean[][]> expected = states(GENERATIONS);
+        History history = record(Long.MAX_VALUE, 3);
+        int g;
+        for (g = 0; g <= GENERATIONS; g++)
+            check(history, g, g - g % 3, expected, null, "every third");
+        assertEquals(3, history.getNextGeneration(0));
+        assertEquals(99, history.getNextGeneration(97));
+        assertEquals(-1, history.getNextGeneration(99));
+    }
+    
+    @Test
+    void seeksAfterBudgetEviction(){
+        List<boolean[][]> expected = states(GENERATIONS);
+        History full = record(Long.MAX_VALUE, 1);
+        // Room for about two segments, so the oldest are dropped
+        History history = record(full.getBytes() / 2, 1);
+        long oldest = history.getOldestGeneration();
+        assertTrue(oldest > 0, "oldest generation " + oldest);
+        assertEquals(0, oldest % KEYFRAME_INTERVAL);
+        assertTrue(history.getBytes() <= history.getBudget());
+        assertEquals(GENERATIONS - oldest + 1, history.getFrameCount());
+        assertNull(history.seek(oldest - 1, null));
+        BoardSnapshot reuse = null;
+        int g;
+        for (g = GENERATIONS; g >= oldest; g--)
+            reuse = check(history, g, g, expected, reuse, "after eviction");
+        // The newest segment is kept even if it alone exceeds the budget
+        History none = record(0, 1);
+        assertEquals(GENERATIONS - GENERATIONS % KEYFRAME_INTERVAL,
+                none.getOldestGeneration());
+        check(none, GENERATIONS, GENERATIONS, expected, null, "no budget");
+    }
+    
+    @Test
+    void recordingAfterRewindReplacesLaterFrames(){
+        List<boolean[][]> expected = states(GENERATIONS);
+        History history = record(Long.MAX_VALUE, 1);
+        int rewind = KEYFRAME_INTERVAL + 8;
+        Board board = new Board(SIZE);
+        board.restore(history.seek(rewind, null));
+        // Take a different path from the rewound generation
+        board.flipCell(0, 0);
+        board.flipCell(SIZE - 1, SIZE - 1);
+        board.update();
+        history.record(board.snapshot(null));
+        assertEquals(rewind + 1, history.getNewestGeneration());
+        List<boolean[][]> branch = new ArrayList<>(expected.subList(0,
+                rewind + 1));
+        branch.add(board.getBoardState());
+        int g;
+        for (g = rewind + 2; g <= GENERATIONS; g++){
+            board.update();
+            history.record(board.snapshot(null));
+            branch.add(board.getBoardState());
+        }
+        BoardSnapshot reuse = null;
+        for (g = 0; g <= GENERATIONS; g++)
+            reuse = check(history, g, g, branch, reuse, "after rewind");
+    }
+    
+    // Generations 0 to last of the random board, stepped on its own.
+    private static List<boolean[][]> states(int last){
+        Board board = Boards.random(SIZE, 0.35, SEED);
+        List<boolean[][]> states = new ArrayList<>();
+        states.add(board.getBoardState());
+        int g;
+        for (g = 1; g <= last; g++){
+            board.update();
+            states.add(board.getBoardState());
+        }
+        return states;
+    }
+    
+    // Record every given number of generations of the random board.
+    private static History record(long budget, int every){
+        Board board = Boards.random(SIZE, 0.35, SEED);
+        History history = new History(SIZE, budget);
+        BoardSnapshot snapshot = null;
+        int g;
+        for (g = 0; g <= GENERATIONS; g++){
+            if (g % every == 0){
+                snapshot = board.snapshot(snapshot);
+                history.record(snapshot);
+            }
+            board.update();
+        }
+        return history;
+    }
+    
+    // Seek to a generation, checking the generation found and its cells.
+    private static BoardSnapshot check(History history, long generation,
+            int found, List<boolean[][]> expected, BoardSnapshot reuse,
+            String message){
+        message += ", seek to " + generation;
+        BoardSnapshot snapshot = history.seek(generation, reuse);
+        if (reuse != null)
+            assertSame(reuse, snapshot, message);
+        assertEquals(found, snapshot.getGeneration(), message);
+        boolean[][] cells = new boolean[SIZE][SIZE];
+        snapshot.forEachLive((x, y) -> cells[x][y] = true);
+        int x;
+        for (x = 0; x < SIZE; x++)
+            assertArrayEquals(expected.get(found)[x], cells[x],
+                    message + ", row " + x);
+        return snapshot;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import java.util.SplittableRandom;
+
+/**
+ * Reference Game of Life written cell by cell on a plain boolean grid, with
+ * no packing, tiles or ghost cells, for checking the packed engines against.
+ * Cells beyond the edges are looked up one at a time as each boundary mode
+ * describes them.
+ * 
+ * @author Dennis Windsor
+ */
+final class NaiveLife {
+    
+    /**
+     * Next state of a cell from its state and its number of live
+     * neighbours.
+     */
+    interface CellRule {
+        boolean next(boolean alive, int neighbours);
+    }
+    
+    /** Conway's rule written out by hand. */
+    static final CellRule CONWAY =
+            (alive, neighbours) -> neighbours == 3 || alive && neighbours == 2;
+    
+    private NaiveLife(){
+    }
+    
+    /**
+     * Returns the cell rule given by a rule's birth and survival counts.
+     * 
+     * @param rule  rule to follow
+     * @return the rule for one cell
+     */
+    static CellRule of(Rule rule){
+        return (alive, neighbours) -> alive ? rule.isSurvival(neighbours)
+                : rule.isBirth(neighbours);
+    }
+    
+    /**
+     * Returns the generation after the given cells.
+     * 
+     * @param cells     square grid of cells, indexed by row then column
+     * @param rule      rule for each cell
+     * @param boundary  how cells beyond the edges are treated
+     * @return the next generation
+     */
+    static boolean[][] step(boolean[][] cells, CellRule rule,
+            Boundary boundary){
+        int size = cells.length;
+        boolean[][] next = new boolean[size][size];
+        int x, y, dx, dy;
+        for (x = 0; x < size; x++)
+            for (y = 0; y < size; y++){
+                int count = 0;
+                for (dx = -1; dx <= 1; dx++)
+                    for (dy = -1; dy <= 1; dy++)
+                        if ((dx != 0 || dy != 0)
+                                && get(cells, x + dx, y + dy, boundary))
+                            count++;
+                next[x][y] = rule.next(cells[x][y], count);
+            }
+        return next;
+    }
+    
+    /**
+     * Returns the state of a cell, which may lie one cell beyond an edge.
+     * 
+     * @param cells     square grid of cells
+     * @param x         row of the cell, from -1 to the size
+     * @param y         column of the cell, from -1 to the size
+     * @param boundary  how cells beyond the edges are treated
+     * @return true if the cell is alive
+     */
+    static boolean get(boolean[][] cells, int x, int y, Boundary boundary){
+        int size = cells.length;
+        boolean rowInside = x >= 0 && x < size;
+        boolean columnInside = y >= 0 && y < size;
+        if (rowInside && columnInside)
+            return cells[x][y];
+        switch (boundary){
+            case TORUS:
+                return cells[Math.floorMod(x, size)][Math.floorMod(y, size)];
+            case KLEIN:
+                // Columns wrap; rows beyond the top and bottom are the
+                // opposite edge row read backwards
+                y = Math.floorMod(y, size);
+                if (rowInside)
+                    return cells[x][y];
+                return cells[x < 0 ? size - 1 : 0][size - 1 - y];
+            case MIRROR:
+                return cells[Math.max(0, Math.min(size - 1, x))]
+                        [Math.max(0, Math.min(size - 1, y))];
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * Returns a random grid with each cell alive with the given chance.
+     * 
+     * @param size      length of one row of the grid
+     * @param density   chance of each cell being alive
+     * @param seed      seed of the random grid
+     * @return the new grid
+     */
+    static boolean[][] random(int size, double density, long seed){
+        SplittableRandom random = new SplittableRandom(seed);
+        boolean[][] cells = new boolean[size][size];
+        int x, y;
+        for (x = 0; x < size; x++)
+            for (y = 0; y < size; y++)
+                cells[x][y] = random.nextDouble() < density;
+        return cells;
+    }
+    
+    /**
+     * Create a board holding the given cells.
+     * 
+     * @param cells square grid of cells
+     * @return a new board at generation 0
+     */
+    static Board toBoard(boolean[][] cells){
+        Board board = new Board(cells.length);
+        int x, y;
+        for (x = 0; x < cells.length; x++)
+            for (y = 0; y < cells.length; y++)
+                if (cells[x][y])
+                    board.flipCell(x, y);
+        return board;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.StringReader;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks OffHeapBoard against a Board seeded with the same soup under every
+ * rule, and that a closed board refuses to be used.
+ * 
+ * @author Dennis Windsor
+ */
+class OffHeapBoardTest {
+    // Rows of one word, filling a word exactly, and spilling into another
+    private static final int[] SIZES = {1, 5, 63, 64, 65, 130};
+    private static final int GENERATIONS = 30;
+    
+    @Test
+    void matchesBoard(){
+        for (int size : SIZES)
+            for (Rule rule : Boards.RULES)
+                check(size, rule);
+    }
+    
+    @Test
+    void matchesBoardWithShapes(){
+        try (OffHeapBoard offHeap = new OffHeapBoard(100)) {
+            Board board = new Board(100);
+            board.addShape("acorn", 40, 40);
+            offHeap.addShape("acorn", 40, 40);
+            board.addShape("glider", 90, 3);
+            offHeap.addShape("glider", 90, 3);
+            step(board, offHeap, "shapes");
+        }
+    }
+    
+    @Test
+    void closedBoardIsRejected(){
+        OffHeapBoard board = new OffHeapBoard(64);
+        board.addShape("glider", 1, 1);
+        board.close();
+        // Closing again does nothing
+        board.close();
+        assertThrows(IllegalStateException.class, board::update);
+        assertThrows(IllegalStateException.class, board::getPopulation);
+        assertThrows(IllegalStateException.class, () -> board.isAlive(0, 0));
+        assertThrows(IllegalStateException.class,
+                () -> board.flipCell(0, 0));
+        assertThrows(IllegalStateException.class,
+                () -> board.addShape("block", 0, 0));
+        assertThrows(IllegalStateException.class,
+                () -> board.addPattern(new StringReader("o!"), 0, 0));
+        assertThrows(IllegalStateException.class,
+                () -> board.forEachLive((x, y) -> { }));
+    }
+    
+    private static void check(int size, Rule rule){
+        Board board = Boards.random(size, 0.4, size * 17L + rule.hashCode());
+        board.setRule(rule);
+        try (OffHeapBoard offHeap = new OffHeapBoard(size)) {
+            offHeap.setRule(rule);
+            board.forEachLive(offHeap::flipCell);
+            step(board, offHeap, "size " + size + ", " + rule);
+        }
+    }
+    
+    private static void step(Board board, OffHeapBoard offHeap,
+            String message){
+        assertSameCells(board, offHeap, message + ", generation 0");
+        int g;
+        for (g = 1; g <= GENERATIONS; g++){
+            board.update();
+            offHeap.update();
+            assertSameCells(board, offHeap, message + ", generation " + g);
+        }
+    }
+    
+    private static void assertSameCells(Board board, OffHeapBoard offHeap,
+            String message){
+        int size = board.getSize();
+        boolean[][] cells = new boolean[size][size];
+        offHeap.forEachLive((x, y) -> cells[x][y] = true);
+        assertEquals(board.getGeneration(), offHeap.getGeneration(), message);
+        Boards.assertCells(cells, board, message);
+        assertEquals(board.getPopulation(), offHeap.getPopulation(), message);
+        // Single cell reads must agree with the live cells visited
+        boolean[] read = new boolean[size];
+        int x, y;
+        for (x = 0; x < size; x++){
+            for (y = 0; y < size; y++)
+                read[y] = offHeap.isAlive(x, y);
+            assertArrayEquals(cells[x], read, message + ", row " + x);
+        }
+    }
+}
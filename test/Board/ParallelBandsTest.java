@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks band splits the equivalence test does not reach. Bands start on
+ * tile boundaries, so a band count that does not divide the tile rows gives
+ * bands of unequal height, and more bands than tile rows leaves some bands
+ * empty. Each split is stepped beside a serial board, comparing cells and
+ * the counts bands record per tile.
+ * 
+ * @author Dennis Windsor
+ */
+class ParallelBandsTest {
+    private static final int GENERATIONS = 30;
+    
+    @Test
+    void unevenBandsMatchSerial(){
+        // 3, 4 and 5 tile rows, the last tile row of each only part full
+        int[] sizes = {130, 200, 300};
+        int[] threads = {2, 3, 5, 7};
+        for (int size : sizes)
+            for (int t : threads)
+                check(size, t);
+    }
+    
+    @Test
+    void emptyBandsMatchSerial(){
+        // One tile row, so every band after the first has no rows
+        check(64, 3);
+        check(10, 4);
+    }
+    
+    @Test
+    void callerExecutorMatchesSerial(){
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Board serial = Boards.random(200, 0.35, 7);
+            Board banded = Boards.random(200, 0.35, 7);
+            // More bands than threads, dividing 4 tile rows unevenly
+            banded.setExecutor(executor, 3);
+            assertEquals(3, banded.getThreads());
+            step(serial, banded, "executor with 3 bands");
+            banded.close();
+            // Closing leaves an executor the board did not create running
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    @Test
+    void closedBoardStepsSerially(){
+        Board serial = Boards.random(130, 0.35, 11);
+        Board banded = Boards.random(130, 0.35, 11);
+        banded.setThreads(3);
+        step(serial, banded, "3 threads");
+        banded.close();
+        assertEquals(1, banded.getThreads());
+        step(serial, banded, "after close");
+    }
+    
+    private static void check(int size, int threads){
+        Board serial = Boards.random(size, 0.35, size * 31 + threads);
+        Board banded = Boards.random(size, 0.35, size * 31 + threads);
+        banded.setThreads(threads);
+        try {
+            step(serial, banded, size + " rows, " + threads + " threads");
+        } finally {
+            banded.close();
+        }
+    }
+    
+    // Step both boards, comparing cells, counts and populations.
+    private static void step(Board serial, Board banded, String message){
+        int size = serial.getSize();
+        int g;
+        for (g = 1; g <= GENERATIONS; g++){
+            serial.update();
+            banded.update();
+            String at = message + ", generation " + serial.getGeneration();
+            Boards.assertSameCells(serial, banded, at);
+            assertEquals(serial.getBirthCount(), banded.getBirthCount(), at);
+            assertEquals(serial.getDeathCount(), banded.getDeathCount(), at);
+            assertEquals(serial.getPopulation(), banded.getPopulation(), at);
+            assertEquals(serial.getPopulation(1, 3, size - 2, size - 5),
+                    banded.getPopulation(1, 3, size - 2, size - 5), at);
+            assertEquals(serial.getActiveTiles(), banded.getActiveTiles(), at);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that PatternReader detects the format of headerless patterns and
+ * reads patterns longer than its buffer.
+ * 
+ * @author Dennis Windsor
+ */
+class PatternReaderTest {
+    private static final List<String> GLIDER =
+            List.of("0,1", "1,2", "2,0", "2,1", "2,2");
+    
+    @Test
+    void readsPlaintextWithoutComment() throws IOException{
+        assertEquals(GLIDER, read(".O.\n..O\nOOO\n"));
+    }
+    
+    @Test
+    void readsPlaintextWithComment() throws IOException{
+        assertEquals(GLIDER, read("!Name: Glider\n.O.\n..O\nOOO\n"));
+    }
+    
+    @Test
+    void readsRleWithHeader() throws IOException{
+        assertEquals(GLIDER, read("#N Glider\nx = 3, y = 3, rule = B3/S23\n"
+                + "bob$2bo$3o!\n"));
+    }
+    
+    @Test
+    void readsHeaderlessRleOnOneLongLine() throws IOException{
+        StringBuilder text = new StringBuilder();
+        int i;
+        for (i = 0; i < 20_000; i++)
+            text.append("ob");
+        text.append('!');
+        List<String> cells = read(text.toString());
+        assertEquals(20_000, cells.size());
+        assertEquals("0,39998", cells.get(cells.size() - 1));
+    }
+    
+    @Test
+    void readsLife106() throws IOException{
+        assertEquals(List.of("-1,0", "2,3"),
+                read("#Life 1.06\n0 -1\n3 2\n"));
+    }
+    
+    private static List<String> read(String text) throws IOException{
+        List<String> cells = new ArrayList<>();
+        PatternReader.read(new StringReader(text),
+                (x, y) -> cells.add(x + "," + y));
+        return cells;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks getPopulation() of a rectangle against a count of isAlive() over
+ * the same cells, for rectangles that start and end inside tiles, on tile
+ * edges and on the board's edges. Rectangles are counted at the start and
+ * after generations stepped singly and with update(int), serially and on
+ * several threads, so the index is checked as each path brings it up to
+ * date.
+ * 
+ * @author Dennis Windsor
+ */
+class PopulationIndexTest {
+    // Five tile rows and five words, the last of each only part full
+    private static final int SIZE = 300;
+    private static final int RANDOM_RECTANGLES = 150;
+    // Rectangles as first row, first column, rows and columns
+    private static final int[][] RECTANGLES = {
+        {0, 0, SIZE, SIZE}, {0, 0, 0, 0}, {5, 5, 0, 10}, {63, 63, 1, 1},
+        {64, 64, 1, 1}, {63, 63, 2, 2}, {64, 64, 64, 64}, {63, 63, 66, 66},
+        {65, 65, 62, 62}, {1, 1, SIZE - 2, SIZE - 2}, {0, 130, SIZE, 1},
+        {256, 0, 44, SIZE}, {SIZE - 1, SIZE - 1, 1, 1}, {10, 3, 50, 250},
+        {100, 190, 137, 109}
+    };
+    
+    @Test
+    void serialMatchesCount(){
+        check(1);
+    }
+    
+    @Test
+    void threadedMatchesCount(){
+        check(3);
+    }
+    
+    @Test
+    void rejectsBadRectangles(){
+        Board board = new Board(SIZE);
+        assertThrows(IllegalArgumentException.class,
+                () -> board.getPopulation(0, 0, -1, 5));
+        assertThrows(ArrayIndexOutOfBoundsException.class,
+                () -> board.getPopulation(-1, 0, 5, 5));
+        assertThrows(ArrayIndexOutOfBoundsException.class,
+                () -> board.getPopulation(SIZE - 4, 0, 5, 5));
+        assertThrows(ArrayIndexOutOfBoundsException.class,
+                () -> board.getPopulation(0, 1, 5, SIZE));
+    }
+    
+    private static void check(int threads){
+        Board board = Boards.random(SIZE, 0.3, threads);
+        board.setThreads(threads);
+        SplittableRandom random = new SplittableRandom(threads);
+        try {
+            compare(board, random, threads + " threads, generation 0");
+            int g;
+            for (g = 0; g < 4; g++){
+                board.update();
+                compare(board, random, threads + " threads, generation "
+                        + board.getGeneration());
+            }
+            board.update(5);
+            compare(board, random, threads + " threads, generation "
+                    + board.getGeneration());
+            // Changes made between generations are counted too
+            board.addShape("glider", 62, 62);
+            board.flipCell(SIZE - 1, 0);
+            compare(board, random, threads + " threads, after editing");
+        } finally {
+            board.close();
+        }
+    }
+    
+    private static void compare(Board board, SplittableRandom random,
+            String message){
+        for (int[] rectangle : RECTANGLES)
+            compare(board, rectangle, message);
+        int i;
+        for (i = 0; i < RANDOM_RECTANGLES; i++){
+            int x = random.nextInt(SIZE);
+            int y = random.nextInt(SIZE);
+            compare(board, new int[] {x, y, random.nextInt(SIZE - x + 1),
+                random.nextInt(SIZE - y + 1)}, message);
+        }
+    }
+    
+    private static void compare(Board board, int[] rectangle,
+            String message){
+        long count = 0;
+        int x, y;
+        for (x = rectangle[0]; x < rectangle[0] + rectangle[2]; x++)
+            for (y = rectangle[1]; y < rectangle[1] + rectangle[3]; y++)
+                if (board.isAlive(x, y))
+                    count++;
+        assertEquals(count, board.getPopulation(rectangle[0], rectangle[1],
+                rectangle[2], rectangle[3]), message + ", rectangle at ("
+                + rectangle[0] + ", " + rectangle[1] + ") of " + rectangle[2]
+                + " by " + rectangle[3]);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import static Board.Boards.assertCells;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the notations Rule.parse accepts and rejects, and steps a rule
+ * other than Life against NaiveLife with the rule written out by hand.
+ * 
+ * @author Dennis Windsor
+ */
+class RuleTest {
+    // HighLife's replicator, which copies itself every 12 generations
+    private static final String[] REPLICATOR = {
+        "..###",
+        ".#..#",
+        "#...#",
+        "#..#.",
+        "###.."
+    };
+    
+    @Test
+    void parsesBirthsAndSurvivals(){
+        Rule rule = Rule.parse("B3/S23");
+        int n;
+        for (n = 0; n <= 8; n++){
+            assertEquals(n == 3, rule.isBirth(n), "birth " + n);
+            assertEquals(n == 2 || n == 3, rule.isSurvival(n),
+                    "survival " + n);
+        }
+        assertEquals(Rule.LIFE, rule);
+        assertEquals("B3/S23", rule.toString());
+    }
+    
+    @Test
+    void parsesOtherForms(){
+        assertEquals(Rule.LIFE, Rule.parse("b3/s23"));
+        assertEquals(Rule.LIFE, Rule.parse("S23/B3"));
+        assertEquals(Rule.LIFE, Rule.parse(" B3 / S23 "));
+        // S/B notation puts survivals first
+        assertEquals(Rule.LIFE, Rule.parse("23/3"));
+        assertEquals(Rule.HIGHLIFE, Rule.parse("23/36"));
+    }
+    
+    @Test
+    void parsesEmptyLists(){
+        Rule rule = Rule.parse("B/S");
+        int n;
+        for (n = 0; n <= 8; n++){
+            assertFalse(rule.isBirth(n), "birth " + n);
+            assertFalse(rule.isSurvival(n), "survival " + n);
+        }
+        assertEquals("B/S", rule.toString());
+        assertEquals(Rule.SEEDS, Rule.parse("B2/S"));
+    }
+    
+    @Test
+    void parsesBirthOnNoNeighbours(){
+        Rule rule = Rule.parse("B0123478/S34678");
+        assertTrue(rule.isBirth(0));
+        assertFalse(rule.isBirth(5));
+        assertEquals("B0123478/S34678", rule.toString());
+        // An empty neighbourhood gives birth; a full one survives
+        assertTrue(rule.next(0));
+        assertTrue(rule.next(511));
+        assertNotEquals(Rule.LIFE, rule);
+    }
+    
+    @Test
+    void rejectsInvalidRules(){
+        String[] invalid = {
+            "B33/S23", "B3/S223", "233/3", "B9/S23", "B3/S9", "B3S23", "B3",
+            "", "B3/S23/", "B3/B3", "S23/S23", "B3/23", "X3/S23", "B3a/S23"
+        };
+        for (String notation : invalid)
+            assertThrows(IllegalArgumentException.class,
+                    () -> Rule.parse(notation), notation);
+    }
+    
+    @Test
+    void highLifeMatchesReference(){
+        // B36/S23 written out by hand rather than through Rule
+        NaiveLife.CellRule highLife = (alive, neighbours) -> alive
+                ? neighbours == 2 || neighbours == 3
+                : neighbours == 3 || neighbours == 6;
+        boolean[][] cells = new boolean[48][48];
+        int x, y;
+        for (x = 0; x < REPLICATOR.length; x++)
+            for (y = 0; y < REPLICATOR[x].length(); y++)
+                cells[20 + x][20 + y] = REPLICATOR[x].charAt(y) == '#';
+        boolean[][] life = cells;
+        Board board = NaiveLife.toBoard(cells);
+        board.setRule(Rule.HIGHLIFE);
+        int g;
+        for (g = 1; g <= 60; g++){
+            cells = NaiveLife.step(cells, highLife, Boundary.DEAD);
+            life = NaiveLife.step(life, NaiveLife.CONWAY, Boundary.DEAD);
+            board.update();
+            assertCells(cells, board, "generation " + g);
+        }
+        // Births on six neighbours made a difference
+        assertNotEquals(population(life), board.getPopulation());
+    }
+    
+    private static long population(boolean[][] cells){
+        long count = 0;
+        for (boolean[] row : cells)
+            for (boolean cell : row)
+                if (cell)
+                    count++;
+        return count;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the strip layouts of a sharded board that the equivalence test
+ * does not reach: one worker whose halos are its own edge rows, strips of a
+ * single row whose halos are both neighbours' edges, and strips of unequal
+ * height. Each is stepped beside a Board under every boundary and a rule
+ * with and without B0. The workers are real JVMs on this host.
+ * 
+ * @author Dennis Windsor
+ */
+class ShardedBoardTest {
+    private static final int GENERATIONS = 20;
+    private static final Rule[] RULES = {
+        Rule.LIFE, Boards.RULES[Boards.RULES.length - 1]
+    };
+    
+    @Test
+    void singleShardMatchesBoard() throws IOException{
+        check(64, 1);
+    }
+    
+    @Test
+    void singleRowStripsMatchBoard() throws IOException{
+        check(6, 6);
+    }
+    
+    @Test
+    void unequalStripsMatchBoard() throws IOException{
+        // Strips of 23, 23 and 24 rows, the last ending mid-tile
+        check(70, 3);
+    }
+    
+    @Test
+    void shapesAcrossStripsMatchBoard() throws IOException{
+        try (ShardedBoard sharded = new ShardedBoard(40, 4)) {
+            Board board = new Board(40);
+            // Strips start at rows 10, 20 and 30, and each shape crosses one
+            String[] shapes = {"r-pentomino", "acorn", "LWS"};
+            int[][] at = {{8, 3}, {19, 20}, {28, 10}};
+            int i;
+            for (i = 0; i < shapes.length; i++){
+                board.addShape(shapes[i], at[i][0], at[i][1]);
+                sharded.addShape(shapes[i], at[i][0], at[i][1]);
+            }
+            assertSameCells(board, sharded, "after adding shapes");
+            int g;
+            for (g = 1; g <= GENERATIONS; g++){
+                board.update();
+                sharded.update();
+                assertSameCells(board, sharded, "generation " + g);
+            }
+        }
+    }
+    
+    private static void check(int size, int shards) throws IOException{
+        try (ShardedBoard sharded = new ShardedBoard(size, shards)) {
+            assertEquals(shards, sharded.getShards());
+            for (Rule rule : RULES)
+                for (Boundary boundary : Boundary.values())
+                    check(sharded, rule, boundary);
+        }
+    }
+    
+    private static void check(ShardedBoard sharded, Rule rule,
+            Boundary boundary) throws IOException{
+        int size = sharded.getSize();
+        String message = size + " rows in " + sharded.getShards()
+                + " strips, " + rule + ", " + boundary;
+        Board board = Boards.random(size, 0.4, rule.hashCode());
+        board.setRule(rule);
+        board.setBoundary(boundary);
+        clear(sharded);
+        sharded.setRule(rule);
+        sharded.setBoundary(boundary);
+        boolean[][] cells = board.getBoardState();
+        int x, y;
+        for (x = 0; x < size; x++)
+            for (y = 0; y < size; y++)
+                if (cells[x][y])
+                    sharded.flipCell(x, y);
+        assertSameCells(board, sharded, message + ", generation 0");
+        int g;
+        for (g = 1; g <= GENERATIONS; g++){
+            board.update();
+            sharded.update();
+            assertSameCells(board, sharded, message + ", generation " + g);
+        }
+    }
+    
+    // Kill every live cell of the sharded board.
+    private static void clear(ShardedBoard sharded) throws IOException{
+        boolean[][] live = state(sharded);
+        int x, y;
+        for (x = 0; x < live.length; x++)
+            for (y = 0; y < live.length; y++)
+                if (live[x][y])
+                    sharded.flipCell(x, y);
+    }
+    
+    private static boolean[][] state(ShardedBoard sharded) throws IOException{
+        int size = sharded.getSize();
+        boolean[][] state = new boolean[size][size];
+        sharded.forEachLive((x, y) -> state[x][y] = true);
+        return state;
+    }
+    
+    private static void assertSameCells(Board board, ShardedBoard sharded,
+            String message) throws IOException{
+        boolean[][] want = board.getBoardState();
+        boolean[][] got = state(sharded);
+        int x;
+        for (x = 0; x < want.length; x++)
+            assertArrayEquals(want[x], got[x], message + ", row " + x);
+        assertEquals(board.getPopulation(), sharded.getPopulation(),
+                message);
+    }
+}
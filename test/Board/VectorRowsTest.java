@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2017 Dennis Windsor
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Board;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the vectorised step at the word counts where it changes how a row
+ * is split: rows with no whole vector before the last word, rows a word
+ * either side of filling vectors, and the scalar words left after them,
+ * each with the last word full, nearly full and holding a single column.
+ * Boards are stepped beside a scalar board under rules taking both the
+ * Life and the general path, comparing cells and the changes recorded for
+ * each tile. Sparse boards check that inactive tiles sharing a vector with
+ * an active one are left as they were.
+ * 
+ * @author Dennis Windsor
+ */
+class VectorRowsTest {
+    private static final int GENERATIONS = 12;
+    private static final Rule[] RULES = {
+        Rule.LIFE, Rule.DAY_AND_NIGHT, Boards.RULES[Boards.RULES.length - 1]
+    };
+    
+    @Test
+    void wordCountsAroundLanesMatchScalar(){
+        assertTrue(Board.isVectorAvailable(), "Vector API not available");
+        int lanes = VectorRows.lanes();
+        int[] words = {1, lanes - 1, lanes, lanes + 1, 2 * lanes,
+            2 * lanes + 1};
+        for (int w : words){
+            if (w < 1)
+                continue;
+            int[] sizes = {64 * w, 64 * w - 1, 64 * (w - 1) + 1};
+            for (int size : sizes)
+                for (Rule rule : RULES)
+                    check(Boards.random(size, 0.35, size), rule,
+                            lanes + " lanes, " + w + " words");
+        }
+    }
+    
+    @Test
+    void sparseTilesMatchScalar(){
+        assertTrue(Board.isVectorAvailable(), "Vector API not available");
+        int lanes = VectorRows.lanes();
+        // One vector and a scalar word; gliders in the first tile of the
+        // vector, in its last, and in the scalar word
+        int size = 64 * (lanes + 1) - 3;
+        Board board = new Board(size);
+        board.addShape("glider", 20, 30);
+        board.addShape("glider", 20, 64 * (lanes - 1) + 30);
+        board.addShape("glider", 90, 64 * lanes + 20);
+        check(board, Rule.LIFE, lanes + " lanes, sparse");
+        check(board, Rule.HIGHLIFE, lanes + " lanes, sparse");
+    }
+    
+    private static void check(Board start, Rule rule, String message){
+        message += ", size " + start.getSize() + ", " + rule;
+        Board scalar = copy(start);
+        Board vector = copy(start);
+        scalar.setRule(rule);
+        vector.setRule(rule);
+        vector.setVectorised(true);
+        assertTrue(vector.isVectorised(), message);
+        int g;
+        for (g = 1; g <= GENERATIONS; g++){
+            scalar.update();
+            vector.update();
+            String at = message + ", generation " + g;
+            Boards.assertSameCells(scalar, vector, at);
+            assertEquals(scalar.getBirthCount(), vector.getBirthCount(), at);
+            assertEquals(scalar.getDeathCount(), vector.getDeathCount(), at);
+            assertEquals(scalar.getActiveTiles(), vector.getActiveTiles(),
+                    at);
+        }
+    }
+    
+    private static Board copy(Board board){
+        Board copy = new Board(board.getSize());
+        board.forEachLive(copy::flipCell);
+        return copy;
+    }
+}